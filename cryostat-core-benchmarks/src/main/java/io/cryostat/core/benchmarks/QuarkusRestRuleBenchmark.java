@@ -0,0 +1,82 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.ResultProvider;
+
+import io.cryostat.core.reports.QuarkusRestRule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Evaluation time of {@link QuarkusRestRule} alone, over an already parsed recording. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuarkusRestRuleBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    SyntheticRecording size;
+
+    IItemCollection items;
+    QuarkusRestRule rule;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, CouldNotLoadRecordingException {
+        Path recording = size.generate();
+        try (InputStream is = Files.newInputStream(recording)) {
+            items = JfrLoaderToolkit.loadEvents(is);
+        } finally {
+            Files.deleteIfExists(recording);
+        }
+        rule = new QuarkusRestRule();
+    }
+
+    @Benchmark
+    public IResult evaluate() throws InterruptedException, ExecutionException {
+        RunnableFuture<IResult> evaluation =
+                rule.createEvaluation(
+                        items, IPreferenceValueProvider.DEFAULT_VALUES, new ResultProvider());
+        evaluation.run();
+        return evaluation.get();
+    }
+}
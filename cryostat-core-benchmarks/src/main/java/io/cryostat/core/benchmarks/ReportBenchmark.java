@@ -0,0 +1,94 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end latency of a full report, from reading the recording to every rule's result, across
+ * recording sizes and executor parallelism. Run with {@code -prof gc} (the default when using
+ * {@link BenchmarkMain}) to also measure allocation per report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    SyntheticRecording size;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    Path recording;
+    ExecutorService executor;
+    InterruptibleReportGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        recording = size.generate();
+        executor = Executors.newFixedThreadPool(parallelism);
+        generator = new InterruptibleReportGenerator(executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        executor.shutdownNow();
+        Files.deleteIfExists(recording);
+    }
+
+    @Benchmark
+    public Map<String, AnalysisResult> reportFromStream()
+            throws IOException, InterruptedException, ExecutionException {
+        try (InputStream is = Files.newInputStream(recording)) {
+            return generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+    }
+
+    @Benchmark
+    public Map<String, AnalysisResult> reportFromFile()
+            throws InterruptedException, ExecutionException {
+        return generator.generateEvalMapInterruptibly(recording, rule -> true).get();
+    }
+}
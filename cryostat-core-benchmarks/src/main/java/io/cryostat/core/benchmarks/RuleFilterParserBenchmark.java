@@ -0,0 +1,82 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+import io.cryostat.core.util.RuleFilterParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Cost of parsing a rule filter expression into a predicate, and of testing rules against it. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleFilterParserBenchmark {
+
+    @Param({"*", "PID1Rule,Allocations.class,!HeapDump", "*,!LongGcPause,!quarkus"})
+    String filter;
+
+    RuleFilterParser parser;
+    List<IRule> rules;
+
+    @Setup
+    public void setup() {
+        parser = new RuleFilterParser();
+        rules = new ArrayList<>(RuleRegistry.getRules());
+    }
+
+    @Benchmark
+    public Predicate<IRule> parse() {
+        return parser.parse(filter);
+    }
+
+    @Benchmark
+    public Predicate<IRule> constructAndParse() {
+        return new RuleFilterParser().parse(filter);
+    }
+
+    @Benchmark
+    public long parseAndTest() {
+        Predicate<IRule> predicate = parser.parse(filter);
+        long accepted = 0;
+        for (IRule rule : rules) {
+            if (predicate.test(rule)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Random;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+/**
+ * Generates JFR recordings of a given size locally with {@link Recording}, so that benchmarks run
+ * offline. Each recording uses the "profile" event settings, and contains a synthetic workload of
+ * Quarkus REST events, allocations and thread sleeps in addition to whatever the JVM emits on its
+ * own. The workload is seeded so that it is the same on every run, but the JVM's own events and the
+ * timing of every event still vary between runs and machines. Each recording spans several chunks,
+ * as long-running recordings do, so that chunked parsing is exercised.
+ */
+public enum SyntheticRecording {
+    SMALL(10_000),
+    MEDIUM(100_000),
+    LARGE(1_000_000);
+
+    /** The number of chunks in each recording. */
+    static final int CHUNKS = 4;
+
+    private static final long SEED = 0x5eed;
+
+    private final int requests;
+
+    SyntheticRecording(int requests) {
+        this.requests = requests;
+    }
+
+    /**
+     * @return a new temporary file containing the recording. The caller is responsible for deleting
+     *     it.
+     */
+    public Path generate() throws IOException {
+        Path file =
+                Files.createTempFile("cryostat-benchmark-" + name().toLowerCase() + "-", ".jfr");
+        Configuration profile;
+        try {
+            profile = Configuration.getConfiguration("profile");
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+        Random random = new Random(SEED);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < CHUNKS; i++) {
+                // a JFR file is a sequence of self-contained chunks, so separate recordings
+                // concatenated together form a single recording of several chunks
+                Path chunk = Files.createTempFile("cryostat-benchmark-chunk-", ".jfr");
+                try {
+                    try (Recording recording = new Recording(profile)) {
+                        recording.start();
+                        runWorkload(random, requests / CHUNKS);
+                        recording.stop();
+                        recording.dump(chunk);
+                    }
+                    Files.copy(chunk, out);
+                } finally {
+                    Files.deleteIfExists(chunk);
+                }
+            }
+        }
+        return file;
+    }
+
+    private static void runWorkload(Random random, int requests) {
+        long sink = 0;
+        for (int i = 0; i < requests; i++) {
+            RestEvent event = new RestEvent();
+            event.begin();
+            event.method = random.nextBoolean() ? "GET" : "POST";
+            event.path = "/api/v4/targets/" + random.nextInt(100);
+            byte[] body = new byte[random.nextInt(64, 4096)];
+            sink += body.length;
+            if (i % 10_000 == 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            event.status = 200;
+            event.responseLength = sink % 4096;
+            event.commit();
+        }
+    }
+
+    @Name("quarkus.Rest")
+    @Label("REST Request")
+    @Category("Quarkus")
+    static class RestEvent extends Event {
+        @Label("HTTP Method")
+        String method;
+
+        @Label("Path")
+        String path;
+
+        @Label("Status")
+        int status;
+
+        @Label("Response Length")
+        long responseLength;
+    }
+}
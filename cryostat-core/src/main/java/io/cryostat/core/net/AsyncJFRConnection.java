@@ -0,0 +1,191 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.net;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.openjdk.jmc.common.unit.IConstrainedMap;
+import org.openjdk.jmc.flightrecorder.configuration.IRecordingDescriptor;
+
+import io.cryostat.libcryostat.JvmIdentifier;
+import io.cryostat.libcryostat.net.MBeanMetrics;
+import io.cryostat.libcryostat.templates.Template;
+
+/**
+ * Runs the blocking operations of a {@link JFRConnection} and its {@link
+ * CryostatFlightRecorderService} on an executor, so that callers need not block a thread of their
+ * own on JMX I/O. Each operation returns a future which fails with the exception the blocking
+ * operation would have thrown. Cancelling a future before its operation has started prevents it
+ * from starting, but does not interrupt an operation already in progress.
+ *
+ * <p>By default operations run on virtual threads when the runtime supports them, and otherwise on
+ * a shared pool of daemon threads.
+ */
+public final class AsyncJFRConnection {
+
+    private final JFRConnection connection;
+    private final Executor executor;
+
+    public AsyncJFRConnection(JFRConnection connection) {
+        this(connection, DefaultExecutor.INSTANCE);
+    }
+
+    public AsyncJFRConnection(JFRConnection connection, Executor executor) {
+        this.connection = connection;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the underlying blocking connection
+     */
+    public JFRConnection getConnection() {
+        return connection;
+    }
+
+    public CompletableFuture<Void> connect() {
+        return run(connection::connect);
+    }
+
+    public CompletableFuture<Void> disconnect() {
+        return run(connection::disconnect);
+    }
+
+    public CompletableFuture<MBeanMetrics> getMBeanMetrics() {
+        return submit(connection::getMBeanMetrics);
+    }
+
+    public CompletableFuture<JvmIdentifier> getJvmIdentifier() {
+        return submit(connection::getJvmIdentifier);
+    }
+
+    public <T> CompletableFuture<T> invokeMBeanOperation(
+            String beanName,
+            String operation,
+            Object[] params,
+            String[] signature,
+            Class<T> returnType) {
+        return submit(
+                () ->
+                        connection.invokeMBeanOperation(
+                                beanName, operation, params, signature, returnType));
+    }
+
+    public CompletableFuture<List<IRecordingDescriptor>> getAvailableRecordings() {
+        return submit(() -> connection.getService().getAvailableRecordings());
+    }
+
+    public CompletableFuture<IRecordingDescriptor> getUpdatedRecordingDescription(
+            IRecordingDescriptor descriptor) {
+        return submit(() -> connection.getService().getUpdatedRecordingDescription(descriptor));
+    }
+
+    public CompletableFuture<IRecordingDescriptor> getSnapshotRecording() {
+        return submit(() -> connection.getService().getSnapshotRecording());
+    }
+
+    public CompletableFuture<IRecordingDescriptor> start(
+            IConstrainedMap<String> recordingOptions, Template eventTemplate) {
+        return submit(() -> connection.getService().start(recordingOptions, eventTemplate));
+    }
+
+    /**
+     * @param template the XML event template to record with
+     */
+    public CompletableFuture<IRecordingDescriptor> start(
+            IConstrainedMap<String> recordingOptions, String template) {
+        return submit(() -> connection.getService().start(recordingOptions, template));
+    }
+
+    public CompletableFuture<Void> stop(IRecordingDescriptor descriptor) {
+        return run(() -> connection.getService().stop(descriptor));
+    }
+
+    public CompletableFuture<Void> close(IRecordingDescriptor descriptor) {
+        return run(() -> connection.getService().close(descriptor));
+    }
+
+    /**
+     * @return the recording's data. Reading it blocks, so it should also be read off of the
+     *     caller's thread.
+     */
+    public CompletableFuture<InputStream> openStream(
+            IRecordingDescriptor descriptor, boolean removeOnClose) {
+        return submit(() -> connection.getService().openStream(descriptor, removeOnClose));
+    }
+
+    private CompletableFuture<Void> run(Action action) {
+        return submit(
+                () -> {
+                    action.run();
+                    return null;
+                });
+    }
+
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(
+                    () -> {
+                        if (future.isDone()) {
+                            return;
+                        }
+                        try {
+                            future.complete(call.call());
+                        } catch (Exception e) {
+                            future.completeExceptionally(e);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    /** Created on first use, so that connections given their own executor never start it. */
+    private static final class DefaultExecutor {
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                // available from Java 21, while this library still runs on 17
+                return (Executor)
+                        Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(
+                        r -> {
+                            Thread thread = new Thread(r, "cryostat-jfr-connection");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+            }
+        }
+    }
+}
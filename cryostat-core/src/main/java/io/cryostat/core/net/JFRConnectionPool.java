@@ -0,0 +1,413 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.net;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.MBeanException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ReflectionException;
+import javax.management.remote.JMXServiceURL;
+
+import org.openjdk.jmc.rjmx.common.ConnectionException;
+import org.openjdk.jmc.rjmx.common.IConnectionHandle;
+import org.openjdk.jmc.rjmx.common.ServiceNotAvailableException;
+
+import io.cryostat.core.templates.TemplateService;
+import io.cryostat.libcryostat.JvmIdentifier;
+import io.cryostat.libcryostat.net.Credentials;
+import io.cryostat.libcryostat.net.IDException;
+import io.cryostat.libcryostat.net.MBeanMetrics;
+import io.cryostat.libcryostat.sys.Clock;
+import io.cryostat.libcryostat.triggers.SmartTrigger;
+
+/**
+ * Shares connections to the same target, made with the same credentials, between callers, so that
+ * the cost of establishing a connection is only paid once. Each {@link #acquire} leases a pooled
+ * connection, which is returned to the pool by closing or disconnecting the lease rather than
+ * closed. Connections which have not been leased for longer than the idle timeout are closed, as
+ * are the least recently used idle connections once the pool is over its maximum size. Connections
+ * which are still leased are never closed by the pool, so it may briefly exceed its maximum size.
+ * Idle connections are checked for on a background thread every half of the idle timeout, so that
+ * they are closed even if the pool is not used again.
+ */
+public final class JFRConnectionPool implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration MIN_EVICTION_PERIOD = Duration.ofMillis(100);
+
+    private final JFRConnectionToolkit toolkit;
+    private final Clock clock;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final ScheduledExecutorService evictor;
+    // in access order, so that iteration starts from the least recently used connection
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+    private boolean closed;
+
+    public JFRConnectionPool(JFRConnectionToolkit toolkit) {
+        this(toolkit, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param maxSize the number of connections to keep open
+     * @param idleTimeout the time after which a connection which is not leased is closed. The
+     *     connection may remain open for up to half as long again before it is noticed.
+     */
+    public JFRConnectionPool(JFRConnectionToolkit toolkit, int maxSize, Duration idleTimeout) {
+        this(toolkit, maxSize, idleTimeout, new Clock());
+    }
+
+    JFRConnectionPool(
+            JFRConnectionToolkit toolkit, int maxSize, Duration idleTimeout, Clock clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        if (idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("idleTimeout must not be negative");
+        }
+        this.toolkit = toolkit;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.clock = clock;
+        this.evictor =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread thread = new Thread(r, "cryostat-jfr-connection-pool");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        // a zero timeout closes connections as soon as they are released, which needs no checks
+        if (idleTimeoutNanos > 0) {
+            long period = Math.max(MIN_EVICTION_PERIOD.toNanos(), idleTimeoutNanos / 2);
+            evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public JFRConnection acquire(JMXServiceURL url) throws ConnectionException {
+        return acquire(url, null);
+    }
+
+    /**
+     * Lease a connection to a target, sharing an existing connection to it if there is one. The
+     * connection is established lazily, as with {@link JFRConnectionToolkit#connect}.
+     *
+     * @return the lease. Closing or disconnecting it returns the connection to the pool.
+     */
+    public JFRConnection acquire(JMXServiceURL url, Credentials credentials)
+            throws ConnectionException {
+        String key = key(url, credentials);
+        List<JFRConnection> stale = new ArrayList<>();
+        Lease lease;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Connection pool is closed");
+            }
+            Entry entry = entries.get(key);
+            // an idle connection which has dropped would only have to be established again
+            if (entry != null && entry.leases == 0 && !entry.connection.isConnected()) {
+                entries.remove(key);
+                stale.add(entry.connection);
+                evictions++;
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+                entry = new Entry(toolkit.connect(url, credentials));
+                entries.put(key, entry);
+            } else {
+                hits++;
+            }
+            entry.leases++;
+            lease = new Lease(entry);
+            stale.addAll(trim());
+        }
+        stale.forEach(JFRConnection::disconnect);
+        return lease;
+    }
+
+    /**
+     * Close the connections which have been idle for longer than the idle timeout now, rather than
+     * at the pool's next periodic check.
+     */
+    public void evictIdle() {
+        List<JFRConnection> stale;
+        synchronized (this) {
+            stale = trim();
+        }
+        stale.forEach(JFRConnection::disconnect);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of leases which shared an existing connection
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of leases which required a new connection
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of connections closed because they were idle or had dropped
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Close every connection which is not leased, and the others once their last lease is returned.
+     * No further connections can be leased.
+     */
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        List<JFRConnection> stale = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Entry entry : entries.values()) {
+                entry.evicted = true;
+                if (entry.leases == 0) {
+                    stale.add(entry.connection);
+                }
+            }
+            entries.clear();
+        }
+        stale.forEach(JFRConnection::disconnect);
+    }
+
+    static String key(JMXServiceURL url, Credentials credentials) {
+        if (credentials == null) {
+            return url.toString();
+        }
+        try {
+            // keep the credentials themselves out of the pool's keys
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(
+                    Objects.toString(credentials.getUsername(), "")
+                            .getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(
+                    Objects.toString(credentials.getPassword(), "")
+                            .getBytes(StandardCharsets.UTF_8));
+            return url + "#" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void release(Entry entry) {
+        List<JFRConnection> stale;
+        synchronized (this) {
+            entry.leases--;
+            entry.idleSince = clock.getMonotonicTime();
+            // a connection already removed from the pool is closed by its last lease
+            boolean orphaned = entry.evicted && entry.leases == 0;
+            stale = trim();
+            if (orphaned) {
+                stale.add(entry.connection);
+            }
+        }
+        stale.forEach(JFRConnection::disconnect);
+    }
+
+    /** Remove expired idle connections, then the least recently used while over capacity. */
+    private List<JFRConnection> trim() {
+        List<JFRConnection> stale = new ArrayList<>();
+        long now = clock.getMonotonicTime();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.leases > 0) {
+                continue;
+            }
+            if (entries.size() > maxSize || now - entry.idleSince >= idleTimeoutNanos) {
+                it.remove();
+                entry.evicted = true;
+                stale.add(entry.connection);
+                evictions++;
+            }
+        }
+        return stale;
+    }
+
+    private static class Entry {
+        final JFRConnection connection;
+        int leases;
+        long idleSince;
+        boolean evicted;
+
+        Entry(JFRConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /** A lease on a pooled connection. Closing or disconnecting it releases the lease. */
+    private final class Lease implements JFRConnection {
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * The pooled connection, which may not be used once it has been released since the pool may
+         * since have closed it or leased it to another caller.
+         */
+        private JFRConnection connection() {
+            if (released.get()) {
+                throw new IllegalStateException("Connection was already returned to the pool");
+            }
+            return entry.connection;
+        }
+
+        @Override
+        public IConnectionHandle getHandle() throws ConnectionException, IOException {
+            return connection().getHandle();
+        }
+
+        @Override
+        public CryostatFlightRecorderService getService()
+                throws ConnectionException, IOException, ServiceNotAvailableException {
+            return connection().getService();
+        }
+
+        @Override
+        public TemplateService getTemplateService() {
+            return connection().getTemplateService();
+        }
+
+        @Override
+        public long getApproximateServerTime(Clock clock) {
+            return connection().getApproximateServerTime(clock);
+        }
+
+        @Override
+        public JMXServiceURL getJMXURL() throws IOException {
+            return connection().getJMXURL();
+        }
+
+        @Override
+        public String getHost() {
+            return connection().getHost();
+        }
+
+        @Override
+        public int getPort() {
+            return connection().getPort();
+        }
+
+        @Override
+        public JvmIdentifier getJvmIdentifier() throws IDException, IOException {
+            return connection().getJvmIdentifier();
+        }
+
+        @Override
+        public <T> T invokeMBeanOperation(
+                String beanName,
+                String operation,
+                Object[] params,
+                String[] signature,
+                Class<T> returnType)
+                throws MalformedObjectNameException,
+                        InstanceNotFoundException,
+                        MBeanException,
+                        ReflectionException,
+                        IOException,
+                        ConnectionException {
+            return connection()
+                    .invokeMBeanOperation(beanName, operation, params, signature, returnType);
+        }
+
+        @Override
+        public List<String> enableSmartTriggers(String definitions) throws ConnectionException {
+            return connection().enableSmartTriggers(definitions);
+        }
+
+        @Override
+        public List<SmartTrigger> listSmartTriggers() throws ConnectionException {
+            return connection().listSmartTriggers();
+        }
+
+        @Override
+        public void disableSmartTrigger(String definitions) throws ConnectionException {
+            connection().disableSmartTrigger(definitions);
+        }
+
+        @Override
+        public MBeanMetrics getMBeanMetrics()
+                throws ConnectionException,
+                        IOException,
+                        InstanceNotFoundException,
+                        IntrospectionException,
+                        ReflectionException {
+            return connection().getMBeanMetrics();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return !released.get() && entry.connection.isConnected();
+        }
+
+        @Override
+        public void connect() throws ConnectionException {
+            connection().connect();
+        }
+
+        /** Return the connection to the pool, which may keep it open for other callers. */
+        @Override
+        public void disconnect() {
+            if (released.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+
+        @Override
+        public void close() {
+            disconnect();
+        }
+    }
+}
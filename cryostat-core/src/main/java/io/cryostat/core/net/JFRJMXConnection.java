@@ -23,12 +23,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
+import javax.management.JMRuntimeException;
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanException;
 import javax.management.MalformedObjectNameException;
@@ -71,6 +75,12 @@ import io.cryostat.libcryostat.sys.Environment;
 import io.cryostat.libcryostat.sys.FileSystem;
 import io.cryostat.libcryostat.tui.ClientWriter;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * A {@link JFRConnection} over JMX. The underlying connection is thread-safe, so remote calls on it
+ * from different threads proceed concurrently; only establishing and closing it are serialized.
+ */
 public class JFRJMXConnection implements JFRConnection {
 
     public static final int DEFAULT_PORT = 9091;
@@ -81,10 +91,36 @@ public class JFRJMXConnection implements JFRConnection {
     protected final FlightRecorderServiceFactory serviceFactory;
     protected final List<Runnable> closeListeners;
     protected final List<ServiceEntry<?>> serviceEntries;
-    protected RJMXConnection rjmxConnection;
-    protected IConnectionHandle handle;
     protected IConnectionDescriptor connectionDescriptor;
 
+    /**
+     * The current connection, or null if not connected.
+     *
+     * @deprecated kept only for subclasses which read it, and will be removed. Assigning it has no
+     *     effect on this connection.
+     */
+    @Deprecated(forRemoval = true)
+    @SuppressFBWarnings(
+            value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD",
+            justification = "only read by subclasses")
+    protected volatile RJMXConnection rjmxConnection;
+
+    /**
+     * The handle of the current connection, or null if not connected.
+     *
+     * @deprecated kept only for subclasses which read it, and will be removed. Use {@link
+     *     #getHandle()} instead. Assigning it has no effect on this connection.
+     */
+    @Deprecated(forRemoval = true)
+    @SuppressFBWarnings(
+            value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD",
+            justification = "only read by subclasses")
+    protected volatile IConnectionHandle handle;
+
+    // held while connecting or disconnecting, but never while using the connection
+    private final Object transitionLock = new Object();
+    private volatile State state;
+
     JFRJMXConnection(
             ClientWriter cw,
             FileSystem fs,
@@ -130,21 +166,29 @@ public class JFRJMXConnection implements JFRConnection {
         this(cw, fs, env, cd, List.of());
     }
 
-    public synchronized IConnectionHandle getHandle() throws ConnectionException, IOException {
-        if (!isConnected()) {
+    public IConnectionHandle getHandle() throws ConnectionException, IOException {
+        return connected().handle;
+    }
+
+    /**
+     * @return the current connection, which is established first if need be
+     */
+    private State connected() throws ConnectionException, IOException {
+        State state = this.state;
+        if (state == null || !state.connection.isConnected()) {
             connect();
+            state = this.state;
         }
-        IConnectionHandle handle = this.handle;
-        if (handle == null || !isConnected()) {
+        if (state == null || !state.connection.isConnected()) {
             throw new ConnectionException(
                     String.format(
                             "Could not connect to remote target %s",
                             this.connectionDescriptor.createJMXServiceURL().toString()));
         }
-        return handle;
+        return state;
     }
 
-    public synchronized CryostatFlightRecorderService getService()
+    public CryostatFlightRecorderService getService()
             throws ConnectionException, IOException, ServiceNotAvailableException {
         return new JmxFlightRecorderService(this);
     }
@@ -153,28 +197,31 @@ public class JFRJMXConnection implements JFRConnection {
         return new RemoteTemplateService(this);
     }
 
-    public synchronized long getApproximateServerTime(Clock clock) {
-        return this.rjmxConnection.getApproximateServerTime(clock.getWallTime());
+    public long getApproximateServerTime(Clock clock) {
+        State state = this.state;
+        if (state == null) {
+            // without a connection there is no known offset from the target's clock
+            return clock.getWallTime();
+        }
+        return state.connection.getApproximateServerTime(clock.getWallTime());
     }
 
-    public synchronized JMXServiceURL getJMXURL() throws IOException {
+    public JMXServiceURL getJMXURL() throws IOException {
         return this.connectionDescriptor.createJMXServiceURL();
     }
 
-    public synchronized String getHost() {
+    public String getHost() {
         try {
-            return ConnectionToolkit.getHostName(
-                    this.rjmxConnection.getConnectionDescriptor().createJMXServiceURL());
+            return ConnectionToolkit.getHostName(this.connectionDescriptor.createJMXServiceURL());
         } catch (IOException e) {
             cw.println(e);
             return "unknown";
         }
     }
 
-    public synchronized int getPort() {
+    public int getPort() {
         try {
-            return ConnectionToolkit.getPort(
-                    this.rjmxConnection.getConnectionDescriptor().createJMXServiceURL());
+            return ConnectionToolkit.getPort(this.connectionDescriptor.createJMXServiceURL());
         } catch (IOException e) {
             cw.println(e);
             return 0;
@@ -182,10 +229,8 @@ public class JFRJMXConnection implements JFRConnection {
     }
 
     @Override
-    public synchronized JvmIdentifier getJvmIdentifier() throws IDException, IOException {
-        if (!isConnected()) {
-            connect();
-        }
+    public JvmIdentifier getJvmIdentifier() throws IDException, IOException {
+        State state = connected();
         List<String> attrNames =
                 new ArrayList<>(
                         Arrays.asList(
@@ -198,9 +243,10 @@ public class JFRJMXConnection implements JFRConnection {
                                 "StartTime"));
         try {
             return JvmIdentifier.from(
-                    JvmIdentifier.getAgentId(this.rjmxConnection.getMBeanServer()),
+                    JvmIdentifier.getAgentId(state.connection.getMBeanServer()),
                     new RuntimeMetrics(
                             getAttributeMap(
+                                    state,
                                     ConnectionToolkit.RUNTIME_BEAN_NAME,
                                     m -> attrNames.contains(m.getName()))));
         } catch (ReflectionException | IntrospectionException | InstanceNotFoundException e) {
@@ -221,11 +267,9 @@ public class JFRJMXConnection implements JFRConnection {
                     ReflectionException,
                     IOException,
                     ConnectionException {
-        if (!isConnected()) {
-            connect();
-        }
         return (T)
-                this.rjmxConnection
+                connected()
+                        .connection
                         .getMBeanServer()
                         .invoke(ObjectName.getInstance(beanName), operation, params, signature);
     }
@@ -279,61 +323,111 @@ public class JFRJMXConnection implements JFRConnection {
         }
     }
 
-    private Map<String, Object> getAttributeMap(ObjectName beanName)
+    private Map<String, Object> getAttributeMap(State state, ObjectName beanName)
             throws InstanceNotFoundException,
                     IntrospectionException,
                     ReflectionException,
                     IOException {
-        return getAttributeMap(beanName, m -> true);
+        return readAttributes(state, beanName, getSchema(state, beanName).names);
     }
 
     private Map<String, Object> getAttributeMap(
-            ObjectName beanName, Predicate<MBeanAttributeInfo> attrPredicate)
+            State state, ObjectName beanName, Predicate<MBeanAttributeInfo> attrPredicate)
+            throws InstanceNotFoundException,
+                    IntrospectionException,
+                    ReflectionException,
+                    IOException {
+        String[] names =
+                Arrays.stream(getSchema(state, beanName).attributes)
+                        .filter(attrPredicate)
+                        .map(MBeanAttributeInfo::getName)
+                        .toArray(String[]::new);
+        return readAttributes(state, beanName, names);
+    }
+
+    /**
+     * The readable attributes of a bean. A bean's attributes do not change for the life of the
+     * target JVM, so they are only fetched once per connection.
+     */
+    private BeanSchema getSchema(State state, ObjectName beanName)
             throws InstanceNotFoundException,
                     IntrospectionException,
                     ReflectionException,
                     IOException {
+        BeanSchema schema = state.schemas.get(beanName);
+        if (schema == null) {
+            // concurrent readers may both fetch the schema, but then share the first
+            schema = new BeanSchema(state.connection.getMBeanInfo(beanName).getAttributes());
+            BeanSchema existing = state.schemas.putIfAbsent(beanName, schema);
+            if (existing != null) {
+                schema = existing;
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Read the attributes of a bean in one round trip. Attributes which could not be read are left
+     * out of the result, so only those are retried one at a time. If the bean could not be read at
+     * all then none of its attributes are retried.
+     *
+     * @throws IOException if the target could not be reached
+     */
+    private Map<String, Object> readAttributes(State state, ObjectName beanName, String[] names)
+            throws IOException {
         Map<String, Object> attrMap = new HashMap<>();
+        if (names.length == 0) {
+            return attrMap;
+        }
 
-        var attrs = rjmxConnection.getMBeanInfo(beanName).getAttributes();
-
-        for (var attr : attrs) {
-            if (attr.isReadable()
-                    && !attr.getName().equals("ObjectName")
-                    && attrPredicate.test(attr)) {
-                try {
-                    Object attrObject =
-                            this.rjmxConnection.getAttributeValue(
-                                    new MRI(Type.ATTRIBUTE, beanName, attr.getName()));
-                    attrMap.put(attr.getName(), parseObject(attrObject));
-                } catch (AttributeNotFoundException
-                        | InstanceNotFoundException
-                        | MBeanException
-                        | ReflectionException
-                        | IOException e) {
-                    cw.println(
-                            String.format(
-                                    "Could not read attribute: [%s], message: [%s]",
-                                    attr.getName(), e.getMessage()));
-                }
+        try {
+            AttributeList values = state.connection.getMBeanServer().getAttributes(beanName, names);
+            for (Attribute attribute : values.asList()) {
+                attrMap.put(attribute.getName(), parseObject(attribute.getValue()));
+            }
+        } catch (InstanceNotFoundException | ReflectionException | JMRuntimeException e) {
+            cw.println(
+                    String.format(
+                            "Could not read attributes of: [%s], message: [%s]",
+                            beanName, e.getMessage()));
+            return attrMap;
+        }
+
+        for (String name : names) {
+            if (attrMap.containsKey(name)) {
+                continue;
+            }
+            try {
+                Object attrObject =
+                        state.connection.getAttributeValue(new MRI(Type.ATTRIBUTE, beanName, name));
+                attrMap.put(name, parseObject(attrObject));
+            } catch (AttributeNotFoundException
+                    | InstanceNotFoundException
+                    | MBeanException
+                    | ReflectionException
+                    | IOException e) {
+                cw.println(
+                        String.format(
+                                "Could not read attribute: [%s], message: [%s]",
+                                name, e.getMessage()));
             }
         }
         return attrMap;
     }
 
-    public synchronized MBeanMetrics getMBeanMetrics()
+    public MBeanMetrics getMBeanMetrics()
             throws IOException,
                     InstanceNotFoundException,
                     IntrospectionException,
                     ReflectionException {
-        if (!isConnected()) {
-            connect();
-        }
+        State state = connected();
 
-        Map<String, Object> runtimeMap = getAttributeMap(ConnectionToolkit.RUNTIME_BEAN_NAME);
-        Map<String, Object> memoryMap = getAttributeMap(ConnectionToolkit.MEMORY_BEAN_NAME);
-        Map<String, Object> threadMap = getAttributeMap(ConnectionToolkit.THREAD_BEAN_NAME);
-        Map<String, Object> osMap = getAttributeMap(ConnectionToolkit.OPERATING_SYSTEM_BEAN_NAME);
+        Map<String, Object> runtimeMap =
+                getAttributeMap(state, ConnectionToolkit.RUNTIME_BEAN_NAME);
+        Map<String, Object> memoryMap = getAttributeMap(state, ConnectionToolkit.MEMORY_BEAN_NAME);
+        Map<String, Object> threadMap = getAttributeMap(state, ConnectionToolkit.THREAD_BEAN_NAME);
+        Map<String, Object> osMap =
+                getAttributeMap(state, ConnectionToolkit.OPERATING_SYSTEM_BEAN_NAME);
 
         RuntimeMetrics runtimeMetrics = new RuntimeMetrics(runtimeMap);
         return new MBeanMetrics(
@@ -342,68 +436,79 @@ public class JFRJMXConnection implements JFRConnection {
                 new ThreadMetrics(threadMap),
                 new OperatingSystemMetrics(osMap),
                 JvmIdentifier.from(
-                                JvmIdentifier.getAgentId(this.rjmxConnection.getMBeanServer()),
+                                JvmIdentifier.getAgentId(state.connection.getMBeanServer()),
                                 runtimeMetrics)
                         .getHash());
     }
 
-    public synchronized boolean isV1() throws ConnectionException, IOException {
+    public boolean isV1() throws ConnectionException, IOException {
         return !isV2();
     }
 
-    public synchronized boolean isV2() throws ConnectionException, IOException {
+    public boolean isV2() throws ConnectionException, IOException {
         return FlightRecorderServiceV2.isAvailable(getHandle());
     }
 
-    public synchronized boolean isConnected() {
-        return this.rjmxConnection != null && this.rjmxConnection.isConnected();
+    public boolean isConnected() {
+        State state = this.state;
+        return state != null && state.connection.isConnected();
     }
 
-    public synchronized void connect() throws ConnectionException {
-        if (isConnected()) {
-            return;
+    public void connect() throws ConnectionException {
+        synchronized (transitionLock) {
+            if (isConnected()) {
+                return;
+            }
+            RJMXConnection connection = attemptConnect(connectionDescriptor);
+            IConnectionHandle handle =
+                    new DefaultConnectionHandle(
+                            connection,
+                            "RJMX Connection",
+                            closeListeners.stream()
+                                    .map(
+                                            l ->
+                                                    new IConnectionListener() {
+                                                        @Override
+                                                        public void onConnectionChange(
+                                                                IConnectionHandle arg0) {
+                                                            l.run();
+                                                        }
+                                                    })
+                                    .collect(Collectors.toList())
+                                    .toArray(new IConnectionListener[0]),
+                            serviceEntries);
+            // a new connection may be to a restarted target, so nothing is carried over
+            this.state = new State(connection, handle);
+            this.rjmxConnection = connection;
+            this.handle = handle;
         }
-        this.rjmxConnection = attemptConnect(connectionDescriptor);
-        this.handle =
-                new DefaultConnectionHandle(
-                        rjmxConnection,
-                        "RJMX Connection",
-                        closeListeners.stream()
-                                .map(
-                                        l ->
-                                                new IConnectionListener() {
-                                                    @Override
-                                                    public void onConnectionChange(
-                                                            IConnectionHandle arg0) {
-                                                        l.run();
-                                                    }
-                                                })
-                                .collect(Collectors.toList())
-                                .toArray(new IConnectionListener[0]),
-                        serviceEntries);
-    }
-
-    public synchronized void disconnect() {
-        try {
-            if (this.handle != null) {
-                this.handle.close();
+    }
+
+    public void disconnect() {
+        synchronized (transitionLock) {
+            State state = this.state;
+            if (state == null) {
+                return;
             }
-        } catch (IOException e) {
-            cw.println(e);
-        } finally {
-            if (this.rjmxConnection != null) {
-                this.rjmxConnection.close();
+            this.state = null;
+            this.rjmxConnection = null;
+            this.handle = null;
+            try {
+                state.handle.close();
+            } catch (IOException e) {
+                cw.println(e);
+            } finally {
+                state.connection.close();
             }
         }
     }
 
     @Override
-    public synchronized void close() {
+    public void close() {
         this.disconnect();
     }
 
-    protected synchronized RJMXConnection attemptConnect(IConnectionDescriptor cd)
-            throws ConnectionException {
+    protected RJMXConnection attemptConnect(IConnectionDescriptor cd) throws ConnectionException {
         try {
             RJMXConnection conn =
                     new RJMXConnection(
@@ -423,6 +528,34 @@ public class JFRJMXConnection implements JFRConnection {
         throw new ConnectionFailureException("Connection Failed");
     }
 
+    /** An established connection, along with what has been learned about the target over it. */
+    private static final class State {
+        final RJMXConnection connection;
+        final IConnectionHandle handle;
+        final Map<ObjectName, BeanSchema> schemas = new ConcurrentHashMap<>();
+
+        State(RJMXConnection connection, IConnectionHandle handle) {
+            this.connection = connection;
+            this.handle = handle;
+        }
+    }
+
+    private static final class BeanSchema {
+        final MBeanAttributeInfo[] attributes;
+        final String[] names;
+
+        BeanSchema(MBeanAttributeInfo[] attributes) {
+            this.attributes =
+                    Arrays.stream(attributes)
+                            .filter(a -> a.isReadable() && !a.getName().equals("ObjectName"))
+                            .toArray(MBeanAttributeInfo[]::new);
+            this.names =
+                    Arrays.stream(this.attributes)
+                            .map(MBeanAttributeInfo::getName)
+                            .toArray(String[]::new);
+        }
+    }
+
     public static class ConnectionFailureException extends RuntimeException {
         public ConnectionFailureException(String message) {
             super(message);
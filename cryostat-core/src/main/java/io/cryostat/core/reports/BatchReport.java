@@ -0,0 +1,54 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+/**
+ * The outcome of a batch of reports. Every recording in the batch has either a report or a failure.
+ *
+ * @param <K> the type of the keys identifying each recording in the batch
+ * @see InterruptibleReportGenerator#generateBatchInterruptibly(Map, java.util.function.Predicate,
+ *     int)
+ */
+public final class BatchReport<K> {
+
+    private final Map<K, Map<String, AnalysisResult>> reports;
+    private final Map<K, Throwable> failures;
+
+    BatchReport(Map<K, Map<String, AnalysisResult>> reports, Map<K, Throwable> failures) {
+        this.reports = Collections.unmodifiableMap(new LinkedHashMap<>(reports));
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * @return the report of each recording which was analyzed successfully
+     */
+    public Map<K, Map<String, AnalysisResult>> getReports() {
+        return reports;
+    }
+
+    /**
+     * @return the reason each recording which could not be analyzed failed
+     */
+    public Map<K, Throwable> getFailures() {
+        return failures;
+    }
+}
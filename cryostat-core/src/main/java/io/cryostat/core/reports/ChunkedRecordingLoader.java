@@ -0,0 +1,173 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.internal.EventArrays;
+import org.openjdk.jmc.flightrecorder.internal.IChunkLoader;
+import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
+import org.openjdk.jmc.flightrecorder.internal.parser.Chunk;
+import org.openjdk.jmc.flightrecorder.internal.parser.LoaderContext;
+import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkLoaderV1;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+
+/**
+ * Loads a JFR file one chunk at a time, so that the caller can parse each chunk as a separate task
+ * on its own executor. This mirrors what {@link JfrLoaderToolkit} does internally on a private
+ * thread pool: every chunk is parsed into one shared {@link LoaderContext}, so the collection built
+ * at the end is identical to the one {@link JfrLoaderToolkit} would have produced from the whole
+ * file.
+ *
+ * <p>Chunks are read from a memory mapping of the file rather than through a stream, so each is
+ * copied straight from the page cache into the array the parser works on. Files small enough to be
+ * mapped as a single buffer share one mapping between all of their chunks, and larger files are
+ * mapped one chunk at a time.
+ *
+ * <p>The parser and the factory for the collection are internals of JMC, which are not part of its
+ * API and may change in any release. This is written against JMC 9.1.2, and
+ * ChunkedRecordingLoaderTest checks it against {@link JfrLoaderToolkit} so that an incompatible
+ * upgrade fails the build. Loading each chunk with {@link JfrLoaderToolkit} instead and merging the
+ * collections avoids the internals, but rules evaluate noticeably slower over a merged collection,
+ * and incremental reports need the event arrays of each chunk.
+ */
+final class ChunkedRecordingLoader {
+
+    private static final byte[] MAGIC = {'F', 'L', 'R', 0};
+    private static final Method BUILD_COLLECTION;
+
+    static {
+        try {
+            // the public JfrLoaderToolkit only builds collections from whole files or streams,
+            // so use the same package-private factory it uses internally
+            Class<?> clazz = Class.forName("org.openjdk.jmc.flightrecorder.EventCollection");
+            BUILD_COLLECTION = clazz.getDeclaredMethod("build", EventArrays.class);
+            BUILD_COLLECTION.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Path file;
+    private final LoaderContext context;
+    private final Set<Long> loadedTimestamps = ConcurrentHashMap.newKeySet();
+    private ByteBuffer mapping;
+
+    ChunkedRecordingLoader(Path file, List<JfrChunk> chunks, List<IParserExtension> extensions) {
+        this.file = file;
+        this.context = new LoaderContext(extensions, false);
+        this.context.setVersion(chunks.get(0).getMajorVersion(), chunks.get(0).getMinorVersion());
+    }
+
+    /**
+     * Read and parse a single chunk into the shared context. This may be called concurrently for
+     * different chunks of the same file.
+     */
+    void load(JfrChunk chunk) throws Exception {
+        IChunkLoader loader = open(slice(chunk), context);
+        // the same chunk can be repeated in a file, ex. when recordings were concatenated
+        if (loadedTimestamps.add(loader.getTimestamp())) {
+            loader.call();
+        }
+    }
+
+    private ByteBuffer slice(JfrChunk chunk) throws IOException, CouldNotLoadRecordingException {
+        ByteBuffer whole;
+        synchronized (this) {
+            if (mapping == null) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    if (channel.size() <= Integer.MAX_VALUE) {
+                        mapping = channel.map(MapMode.READ_ONLY, 0, channel.size());
+                    }
+                }
+            }
+            whole = mapping;
+        }
+        if (whole == null) {
+            return map(file, chunk);
+        }
+        return whole.duplicate()
+                .limit((int) (chunk.getPosition() + chunk.getSize()))
+                .position((int) chunk.getPosition());
+    }
+
+    /** Build the collection of all events, once every chunk has been loaded. */
+    IItemCollection build() throws CouldNotLoadRecordingException, IOException {
+        return build(context.buildEventArrays());
+    }
+
+    /**
+     * Parse a single chunk into a context of its own, so that its events can be retained and later
+     * combined with those of other chunks by {@link #build(EventArrays)}.
+     */
+    static EventArrays loadChunk(Path file, JfrChunk chunk, List<IParserExtension> extensions)
+            throws Exception {
+        LoaderContext context = new LoaderContext(extensions, false);
+        context.setVersion(chunk.getMajorVersion(), chunk.getMinorVersion());
+        open(map(file, chunk), context).call();
+        return context.buildEventArrays();
+    }
+
+    static IItemCollection build(EventArrays arrays) throws CouldNotLoadRecordingException {
+        try {
+            return (IItemCollection) BUILD_COLLECTION.invoke(null, arrays);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new CouldNotLoadRecordingException(e.getCause());
+        }
+    }
+
+    /** Map only the region of the file which holds the chunk. */
+    private static ByteBuffer map(Path file, JfrChunk chunk)
+            throws IOException, CouldNotLoadRecordingException {
+        if (chunk.getSize() > Integer.MAX_VALUE) {
+            // the parser holds each chunk in a single array
+            throw new InvalidJfrFileException();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping remains valid once the channel is closed
+            return channel.map(MapMode.READ_ONLY, chunk.getPosition(), chunk.getSize());
+        }
+    }
+
+    /**
+     * @param chunk the chunk's bytes, from its position up to its limit
+     */
+    private static IChunkLoader open(ByteBuffer chunk, LoaderContext context)
+            throws IOException, CouldNotLoadRecordingException {
+        for (byte b : MAGIC) {
+            if (chunk.remaining() == 0 || chunk.get() != b) {
+                throw new InvalidJfrFileException();
+            }
+        }
+        return ChunkLoaderV1.create(
+                new Chunk(new ByteBufferDataInput(chunk), MAGIC.length, new byte[0]), context);
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.openjdk.jmc.common.item.IAttribute;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.internal.EventArray;
+import org.openjdk.jmc.flightrecorder.internal.EventArrays;
+import org.openjdk.jmc.flightrecorder.internal.parser.ParserStats;
+import org.openjdk.jmc.flightrecorder.internal.util.DisjointBuilder;
+
+/**
+ * The parsed chunks of a continuous recording, retained between reports on that recording so that
+ * each report only parses the chunks written since the previous one. Chunks are identified by their
+ * start time and size. A chunk is evicted once it no longer appears in the recording, or once it
+ * has aged out of the configured retention window.
+ *
+ * <p>Each chunk is parsed into a context of its own, so constants such as stack traces and thread
+ * names are not shared between chunks, and the retained chunks together occupy somewhat more heap
+ * than the same events parsed as a single file. Changing which rules are selected changes which
+ * events are retained, so a report selecting different rules than the previous one parses the whole
+ * recording again.
+ *
+ * @see InterruptibleReportGenerator#generateEvalMapIncrementally(java.nio.file.Path,
+ *     IncrementalRecording, java.util.function.Predicate)
+ */
+public final class IncrementalRecording {
+
+    private final Duration maxAge;
+    private final Object lock = new Object();
+    private final Map<ChunkKey, EventArrays> chunks = new HashMap<>();
+    private Set<String> discardedTypes;
+
+    public IncrementalRecording() {
+        this(null);
+    }
+
+    /**
+     * @param maxAge the maximum age of the chunks to analyze, measured back from the end of the
+     *     most recent chunk. Older chunks are skipped even if they remain in the recording. Null to
+     *     analyze every chunk in the recording.
+     */
+    public IncrementalRecording(Duration maxAge) {
+        if (maxAge != null && (maxAge.isNegative() || maxAge.isZero())) {
+            throw new IllegalArgumentException("maxAge must be positive");
+        }
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @return the number of parsed chunks currently retained
+     */
+    public int getRetainedChunks() {
+        synchronized (lock) {
+            return chunks.size();
+        }
+    }
+
+    /** Discard all retained chunks, so that the next report parses the whole recording. */
+    public void clear() {
+        synchronized (lock) {
+            chunks.clear();
+            discardedTypes = null;
+        }
+    }
+
+    /**
+     * Evict the retained chunks which are no longer part of the recording, and determine which of
+     * its chunks still need to be parsed.
+     *
+     * @param present the chunks currently in the recording
+     * @param discardedTypes the event types which the parser extensions will discard
+     */
+    Window update(List<JfrChunk> present, Set<String> discardedTypes) {
+        long newestEnd = Long.MIN_VALUE;
+        for (JfrChunk chunk : present) {
+            newestEnd = Math.max(newestEnd, chunk.getEndNanos());
+        }
+        // the same chunk can be repeated in a file, ex. when recordings were concatenated
+        Map<ChunkKey, JfrChunk> window = new LinkedHashMap<>();
+        for (JfrChunk chunk : present) {
+            if (maxAge == null || newestEnd - chunk.getEndNanos() <= maxAge.toNanos()) {
+                window.putIfAbsent(new ChunkKey(chunk), chunk);
+            }
+        }
+        synchronized (lock) {
+            if (!discardedTypes.equals(this.discardedTypes)) {
+                chunks.clear();
+                this.discardedTypes = discardedTypes;
+            }
+            chunks.keySet().retainAll(window.keySet());
+            Map<JfrChunk, EventArrays> retained = new LinkedHashMap<>();
+            List<JfrChunk> unparsed = new ArrayList<>();
+            window.forEach(
+                    (key, chunk) -> {
+                        EventArrays arrays = chunks.get(key);
+                        if (arrays != null) {
+                            retained.put(chunk, arrays);
+                        } else {
+                            unparsed.add(chunk);
+                        }
+                    });
+            return new Window(discardedTypes, retained, unparsed);
+        }
+    }
+
+    /**
+     * Retain the newly parsed chunks of a window, and build the collection of every event within
+     * it.
+     */
+    IItemCollection build(Window window, Map<JfrChunk, EventArrays> parsed)
+            throws CouldNotLoadRecordingException {
+        synchronized (lock) {
+            // a concurrent report with a different rule selection may have replaced the retained
+            // chunks, in which case these chunks no longer belong here
+            if (window.discardedTypes.equals(discardedTypes)) {
+                parsed.forEach((chunk, arrays) -> chunks.put(new ChunkKey(chunk), arrays));
+            }
+        }
+        List<JfrChunk> ordered = new ArrayList<>(window.retained.keySet());
+        ordered.addAll(parsed.keySet());
+        ordered.sort((a, b) -> Long.compare(a.getStartNanos(), b.getStartNanos()));
+
+        // group the chunks' arrays by event type, so that each type is merged back into the
+        // arrays it would have been built into had the chunks been parsed together. Rules may
+        // assume that each event type is a single iterable within the collection.
+        Map<TypeKey, List<EventArray>> byType = new LinkedHashMap<>();
+        Set<IRange<IQuantity>> chunkRanges = new LinkedHashSet<>();
+        ParserStats stats = new ParserStats();
+        for (JfrChunk chunk : ordered) {
+            EventArrays chunkArrays = window.retained.getOrDefault(chunk, parsed.get(chunk));
+            for (EventArray array : chunkArrays.getArrays()) {
+                byType.computeIfAbsent(new TypeKey(array.getType()), k -> new ArrayList<>())
+                        .add(array);
+            }
+            chunkRanges.addAll(chunkArrays.getChunkTimeranges());
+            stats.setVersion(chunk.getMajorVersion(), chunk.getMinorVersion());
+            stats.incChunkCount();
+        }
+        List<EventArray> arrays = new ArrayList<>();
+        byType.values().forEach(typeArrays -> arrays.addAll(merge(typeArrays)));
+        return ChunkedRecordingLoader.build(
+                new EventArrays(arrays.toArray(new EventArray[0]), chunkRanges, stats));
+    }
+
+    /**
+     * Merge the arrays of a single event type from several chunks, in chunk order, the same way the
+     * parser merges them when the chunks are parsed together. Instant events are concatenated into
+     * a single array. Events with a duration are held in arrays of non-overlapping events, which
+     * are packed into as few arrays as possible while keeping each one non-overlapping.
+     */
+    private static List<EventArray> merge(List<EventArray> typeArrays) {
+        if (typeArrays.size() == 1) {
+            return typeArrays;
+        }
+        // the chunks' types are structurally identical, so any of them can access all the events
+        EventArray first = typeArrays.get(0);
+        IType<IItem> type = first.getType();
+        List<EventArray> merged = new ArrayList<>();
+        if (type.getAttributes().contains(JfrAttributes.END_TIME)) {
+            IMemberAccessor<IQuantity, IItem> start = JfrAttributes.START_TIME.getAccessor(type);
+            IMemberAccessor<IQuantity, IItem> end = JfrAttributes.END_TIME.getAccessor(type);
+            List<IItem[]> lanes = new ArrayList<>();
+            for (EventArray array : typeArrays) {
+                if (array.getEvents().length > 0) {
+                    lanes.add(array.getEvents());
+                }
+            }
+            lanes.sort(
+                    (a, b) ->
+                            end.getMember(a[a.length - 1])
+                                    .compareTo(end.getMember(b[b.length - 1])));
+            DisjointBuilder<IItem[]> packed =
+                    new DisjointBuilder<>(
+                            lane -> start.getMember(lane[0]),
+                            lane -> end.getMember(lane[lane.length - 1]));
+            lanes.forEach(packed::add);
+            for (IItem[][] packedLanes :
+                    DisjointBuilder.toArrays(List.of(packed), IItem[][]::new)) {
+                List<IItem> events = new ArrayList<>();
+                for (IItem[] lane : packedLanes) {
+                    Collections.addAll(events, lane);
+                }
+                merged.add(
+                        new EventArray(
+                                events.toArray(new IItem[0]), type, first.getTypeCategory()));
+            }
+        } else {
+            List<IItem> events = new ArrayList<>();
+            for (EventArray array : typeArrays) {
+                Collections.addAll(events, array.getEvents());
+            }
+            merged.add(new EventArray(events.toArray(new IItem[0]), type, first.getTypeCategory()));
+        }
+        if (merged.isEmpty()) {
+            merged.add(new EventArray(new IItem[0], type, first.getTypeCategory()));
+        }
+        return merged;
+    }
+
+    /** The chunks to analyze in a single report. */
+    static class Window {
+        private final Set<String> discardedTypes;
+        private final Map<JfrChunk, EventArrays> retained;
+        private final List<JfrChunk> unparsed;
+
+        private Window(
+                Set<String> discardedTypes,
+                Map<JfrChunk, EventArrays> retained,
+                List<JfrChunk> unparsed) {
+            this.discardedTypes = discardedTypes;
+            this.retained = retained;
+            this.unparsed = unparsed;
+        }
+
+        /**
+         * @return the chunks which were not already retained and must be parsed
+         */
+        List<JfrChunk> getUnparsed() {
+            return Collections.unmodifiableList(unparsed);
+        }
+    }
+
+    /**
+     * Identifies an event type across chunks. Types with the same identifier but different fields,
+     * ex. from chunks written by different JVM versions, are kept apart.
+     */
+    private static class TypeKey {
+        final String identifier;
+        final List<IAttribute<?>> attributes;
+
+        TypeKey(IType<IItem> type) {
+            this.identifier = type.getIdentifier();
+            this.attributes = type.getAttributes();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TypeKey)) {
+                return false;
+            }
+            TypeKey other = (TypeKey) o;
+            return identifier.equals(other.identifier) && attributes.equals(other.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(identifier, attributes);
+        }
+    }
+
+    private static class ChunkKey {
+        final long startNanos;
+        final long size;
+
+        ChunkKey(JfrChunk chunk) {
+            this.startNanos = chunk.getStartNanos();
+            this.size = chunk.getSize();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey other = (ChunkKey) o;
+            return startNanos == other.startNanos && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(startNanos, size);
+        }
+    }
+}
@@ -17,45 +17,62 @@ package io.cryostat.core.reports;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.Queue;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.ItemFilters;
 import org.openjdk.jmc.common.unit.IQuantity;
-import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.Pair;
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
-import org.openjdk.jmc.flightrecorder.rules.DependsOn;
+import org.openjdk.jmc.flightrecorder.internal.EventArrays;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
 import org.openjdk.jmc.flightrecorder.rules.IRecordingSetting;
 import org.openjdk.jmc.flightrecorder.rules.IResult;
 import org.openjdk.jmc.flightrecorder.rules.IRule;
-import org.openjdk.jmc.flightrecorder.rules.ResultBuilder;
-import org.openjdk.jmc.flightrecorder.rules.ResultProvider;
 import org.openjdk.jmc.flightrecorder.rules.ResultToolkit;
 import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
-import org.openjdk.jmc.flightrecorder.rules.Severity;
 import org.openjdk.jmc.flightrecorder.rules.TypedResult;
-import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.io.input.CountingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,172 +81,920 @@ public class InterruptibleReportGenerator {
 
     private final ExecutorService qThread = Executors.newCachedThreadPool();
     private final ExecutorService executor;
+    private final ReportResultCache resultCache;
+    private final ParsedRecordingCache recordingCache;
+    private final ReportWorkerPool workerPool;
+    private final ReportAdmissionController admissionController;
+    private final ReportMetricsListener metrics;
+    private final Duration reportTimeout;
+    private final Duration ruleTimeout;
+    private final boolean lazyEvaluations;
+    private final RuleCostProfile ruleCostProfile;
     private final List<IRule> rules = new ArrayList<>();
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     public InterruptibleReportGenerator(ExecutorService executor) {
-        this.executor = executor;
+        this(executor, null);
+    }
+
+    /**
+     * @param executor the executor to parse recordings and evaluate rules on
+     * @param resultCache a cache of previously generated reports, or null to always generate
+     *     reports from scratch
+     */
+    public InterruptibleReportGenerator(ExecutorService executor, ReportResultCache resultCache) {
+        this(Builder.create(executor).resultCache(resultCache));
+    }
+
+    private InterruptibleReportGenerator(Builder builder) {
+        this.executor = builder.executor;
+        this.resultCache = builder.resultCache;
+        this.recordingCache = builder.recordingCache;
+        this.workerPool = builder.workerPool;
+        this.admissionController = builder.admissionController;
+        this.metrics = builder.metrics;
+        this.reportTimeout = builder.reportTimeout;
+        this.ruleTimeout = builder.ruleTimeout;
+        this.lazyEvaluations = builder.lazyEvaluations;
+        this.ruleCostProfile = builder.ruleCostProfile;
         this.rules.addAll(RuleRegistry.getRules());
         this.rules.add(new QuarkusRestRule());
     }
 
     public Future<Map<String, AnalysisResult>> generateEvalMapInterruptibly(
             InputStream recording, Predicate<IRule> predicate) {
+        return generateEvalMapInterruptibly(recording, predicate, (id, result) -> {});
+    }
+
+    /**
+     * Generate a report, additionally delivering each rule's result as soon as that rule's
+     * evaluation completes rather than only once the whole report is done.
+     *
+     * @param onResult called with the rule ID and result of each rule in the report, in order of
+     *     completion. This may be called concurrently from several executor threads, so it should
+     *     be thread-safe and should not block. It is not called after the report is cancelled or
+     *     fails.
+     */
+    public Future<Map<String, AnalysisResult>> generateEvalMapInterruptibly(
+            InputStream recording,
+            Predicate<IRule> predicate,
+            BiConsumer<String, AnalysisResult> onResult) {
         Objects.requireNonNull(recording);
         Objects.requireNonNull(predicate);
-        return qThread.submit(
+        Objects.requireNonNull(onResult);
+        ReportTask task = newTask(onResult);
+        // the qThread only admits and schedules work. Parsing and rule evaluations are each
+        // separate stages run on the executor, so a large recording does not hold up the queue.
+        qThread.execute(
                 () -> {
-                    try {
-                        Collection<IResult> results =
-                                generateResultHelper(recording, predicate).left;
-                        Map<String, AnalysisResult> evalMap = new HashMap<String, AnalysisResult>();
-                        for (var eval : results) {
-                            IQuantity scoreQuantity = eval.getResult(TypedResult.SCORE);
-                            double score;
-                            if (scoreQuantity != null) {
-                                score = scoreQuantity.doubleValue();
+                    if (resultCache == null && workerPool != null) {
+                        generateRemotely(task, task.submit(() -> spool(recording)), predicate);
+                    } else if (resultCache == null) {
+                        // the length of the stream is not known until it has been read
+                        generate(
+                                task,
+                                -1,
+                                () -> task.submit(() -> parse(recording, predicate)),
+                                predicate);
+                    } else {
+                        generateCached(task, task.submit(() -> spool(recording)), predicate);
+                    }
+                });
+        return task.result;
+    }
+
+    /**
+     * Generate a report from a JFR file on local disk. The file is split at its chunk boundaries
+     * and each chunk is parsed as a separate stage on the executor, so large multi-chunk recordings
+     * are parsed in parallel rather than as one serial stream.
+     */
+    public Future<Map<String, AnalysisResult>> generateEvalMapInterruptibly(
+            Path recording, Predicate<IRule> predicate) {
+        return generateEvalMapInterruptibly(recording, predicate, (id, result) -> {});
+    }
+
+    /**
+     * Generate a report from a JFR file on local disk, additionally delivering each rule's result
+     * as soon as it is available.
+     *
+     * @see #generateEvalMapInterruptibly(InputStream, Predicate, BiConsumer)
+     */
+    public Future<Map<String, AnalysisResult>> generateEvalMapInterruptibly(
+            Path recording,
+            Predicate<IRule> predicate,
+            BiConsumer<String, AnalysisResult> onResult) {
+        Objects.requireNonNull(recording);
+        Objects.requireNonNull(predicate);
+        Objects.requireNonNull(onResult);
+        ReportTask task = newTask(onResult);
+        qThread.execute(() -> generate(task, recording, predicate));
+        return task.result;
+    }
+
+    /**
+     * Generate a report covering only the events of a JFR file on local disk which overlap a time
+     * window. Chunks which lie entirely outside of the window are skipped using their headers,
+     * without being read or parsed, so the cost of the report scales with the length of the window
+     * rather than that of the recording. Events describing the recording and the JVM, which are
+     * only written at the start of each chunk, are retained even if they precede the window. Events
+     * are written to a chunk when they end, so an event which began within the window but ended in
+     * a chunk after it, ex. a long monitor wait, is not included. Reports for a window are not
+     * looked up in or stored to the result cache.
+     *
+     * @param start the start of the window, inclusive
+     * @param end the end of the window, inclusive
+     * @throws IllegalArgumentException if the window ends before it starts
+     */
+    public Future<Map<String, AnalysisResult>> generateEvalMapInterruptibly(
+            Path recording, Instant start, Instant end, Predicate<IRule> predicate) {
+        return generateEvalMapInterruptibly(recording, start, end, predicate, (id, result) -> {});
+    }
+
+    /**
+     * Generate a report covering a time window of a JFR file on local disk, additionally delivering
+     * each rule's result as soon as it is available.
+     *
+     * @see #generateEvalMapInterruptibly(Path, Instant, Instant, Predicate)
+     * @see #generateEvalMapInterruptibly(InputStream, Predicate, BiConsumer)
+     */
+    public Future<Map<String, AnalysisResult>> generateEvalMapInterruptibly(
+            Path recording,
+            Instant start,
+            Instant end,
+            Predicate<IRule> predicate,
+            BiConsumer<String, AnalysisResult> onResult) {
+        Objects.requireNonNull(recording);
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(end);
+        Objects.requireNonNull(predicate);
+        Objects.requireNonNull(onResult);
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("end must not be before start");
+        }
+        long startNanos = toEpochNanos(start);
+        long endNanos = toEpochNanos(end);
+        ReportTask task = newTask(onResult);
+        qThread.execute(
+                () ->
+                        generate(
+                                task,
+                                sizeOf(recording),
+                                () ->
+                                        parseChunks(
+                                                        task,
+                                                        recording,
+                                                        predicate,
+                                                        chunk ->
+                                                                chunk.getStartNanos() <= endNanos
+                                                                        && chunk.getEndNanos()
+                                                                                >= startNanos)
+                                                .thenApply(
+                                                        p -> {
+                                                            // counting the lazily filtered
+                                                            // window would take a pass over
+                                                            // every event
+                                                            task.itemCount = countItems(p.left);
+                                                            return new Pair<>(
+                                                                    within(
+                                                                            p.left,
+                                                                            startNanos,
+                                                                            endNanos),
+                                                                    p.right);
+                                                        }),
+                                predicate,
+                                false));
+        return task.result;
+    }
+
+    /**
+     * Generate a quick, approximate report from a sample of a JFR file's chunks, followed by the
+     * full report. The sample is deterministic: chunks are taken at even intervals across the
+     * recording, so that it spans the recording's whole duration. Every result of the preview is
+     * marked as {@link AnalysisResult#isApproximate() approximate}. Rules which count or sum events
+     * see only those of the sampled chunks, so their scores tend to be understated rather than
+     * scaled up. A recording of a single chunk cannot be sampled, so its preview is complete. The
+     * full report is started once the preview is done, and is generated exactly as by {@link
+     * #generateEvalMapInterruptibly(Path, Predicate)}. Previews are not looked up in or stored to
+     * the result cache.
+     *
+     * @param sampleRatio the fraction of the recording's chunks to analyze for the preview, greater
+     *     than 0 and at most 1
+     * @throws IllegalArgumentException if the ratio is out of range
+     */
+    public PreviewReport generatePreviewInterruptibly(
+            Path recording, double sampleRatio, Predicate<IRule> predicate) {
+        Objects.requireNonNull(recording);
+        Objects.requireNonNull(predicate);
+        if (!(sampleRatio > 0 && sampleRatio <= 1)) {
+            throw new IllegalArgumentException("sampleRatio must be in (0, 1]");
+        }
+        ReportTask preview = newTask((id, result) -> {});
+        preview.approximate = true;
+        ReportTask full = newTask((id, result) -> {});
+        preview.result.whenComplete(
+                (v, t) -> {
+                    if (!full.result.isDone()) {
+                        qThread.execute(() -> generate(full, recording, predicate));
+                    }
+                });
+        qThread.execute(
+                () ->
+                        generate(
+                                preview,
+                                PreviewSampler.sampleSize(sizeOf(recording), sampleRatio),
+                                () ->
+                                        parseSelectedChunks(
+                                                preview,
+                                                recording,
+                                                predicate,
+                                                chunks ->
+                                                        PreviewSampler.sample(chunks, sampleRatio)),
+                                predicate,
+                                false));
+        return new PreviewReport(preview.result, full.result);
+    }
+
+    /**
+     * Generate reports for a batch of JFR files on local disk, ex. for offline analysis of many
+     * archived recordings. Only a bounded number of recordings are parsed and retained at once, and
+     * the stages of those reports take turns on the executor so that each makes steady progress
+     * rather than one report's many rule evaluations holding up the others. A recording which
+     * cannot be analyzed is recorded as a failure without affecting the rest of the batch.
+     *
+     * @param recordings the recordings to analyze, keyed by an identifier of the caller's choosing
+     * @param maxConcurrentReports the maximum number of recordings to analyze at once, which bounds
+     *     the heap used by the batch. Recordings are started in iteration order as earlier ones
+     *     complete.
+     * @return a future completing once every recording has either been analyzed or failed.
+     *     Cancelling it cancels every report still in progress and skips those not yet started.
+     */
+    public <K> Future<BatchReport<K>> generateBatchInterruptibly(
+            Map<K, Path> recordings, Predicate<IRule> predicate, int maxConcurrentReports) {
+        Objects.requireNonNull(recordings);
+        Objects.requireNonNull(predicate);
+        if (maxConcurrentReports < 1) {
+            throw new IllegalArgumentException("maxConcurrentReports must be positive");
+        }
+        ReportBatch<K> batch =
+                new ReportBatch<>(
+                        recordings,
+                        executor,
+                        dispatcher -> newTask((id, result) -> {}, dispatcher),
+                        (task, recording) ->
+                                qThread.execute(() -> generate(task, recording, predicate)));
+        for (int i = 0; i < maxConcurrentReports; i++) {
+            batch.startNext();
+        }
+        batch.completeIfDone();
+        return batch.result;
+    }
+
+    /**
+     * Generate a report from the current contents of a continuous recording, parsing only the
+     * chunks which were added since the last report generated with the same {@link
+     * IncrementalRecording}. The events of chunks parsed by earlier reports are retained by the
+     * {@link IncrementalRecording} until those chunks leave the recording or age out. Reports are
+     * not looked up in or stored to the result cache, since each contains new data.
+     *
+     * @param recording a JFR file containing the recording's current chunks, ex. as dumped from its
+     *     repository
+     * @param state the chunks already parsed from earlier dumps of the same recording
+     */
+    public Future<Map<String, AnalysisResult>> generateEvalMapIncrementally(
+            Path recording, IncrementalRecording state, Predicate<IRule> predicate) {
+        return generateEvalMapIncrementally(recording, state, predicate, (id, result) -> {});
+    }
+
+    /**
+     * Generate a report from the current contents of a continuous recording, additionally
+     * delivering each rule's result as soon as it is available.
+     *
+     * @see #generateEvalMapIncrementally(Path, IncrementalRecording, Predicate)
+     * @see #generateEvalMapInterruptibly(InputStream, Predicate, BiConsumer)
+     */
+    public Future<Map<String, AnalysisResult>> generateEvalMapIncrementally(
+            Path recording,
+            IncrementalRecording state,
+            Predicate<IRule> predicate,
+            BiConsumer<String, AnalysisResult> onResult) {
+        Objects.requireNonNull(recording);
+        Objects.requireNonNull(state);
+        Objects.requireNonNull(predicate);
+        Objects.requireNonNull(onResult);
+        ReportTask task = newTask(onResult);
+        qThread.execute(
+                () ->
+                        generate(
+                                task,
+                                sizeOf(recording),
+                                () -> parseIncrementally(task, recording, state, predicate),
+                                predicate,
+                                false));
+        return task.result;
+    }
+
+    private ReportTask newTask(BiConsumer<String, AnalysisResult> onResult) {
+        return newTask(onResult, executor::submit);
+    }
+
+    /**
+     * @param dispatcher hands each stage of the report to the executor, returning a future which
+     *     cancels or interrupts the stage
+     */
+    private ReportTask newTask(
+            BiConsumer<String, AnalysisResult> onResult, Function<Runnable, Future<?>> dispatcher) {
+        return new ReportTask(onResult, dispatcher, qThread, reportTimeout, metrics);
+    }
+
+    private void generate(ReportTask task, Path recording, Predicate<IRule> predicate) {
+        if (resultCache == null && workerPool != null) {
+            generateRemotely(task, recording, predicate);
+        } else if (resultCache == null) {
+            generate(
+                    task,
+                    sizeOf(recording),
+                    () -> parseShared(task, recording, null, predicate),
+                    predicate);
+        } else {
+            generateCached(task, task.submit(() -> digest(recording)), predicate);
+        }
+    }
+
+    private void generate(
+            ReportTask task,
+            long recordingBytes,
+            Supplier<CompletableFuture<Pair<IItemCollection, Long>>> parser,
+            Predicate<IRule> predicate) {
+        generate(task, recordingBytes, parser, predicate, true);
+    }
+
+    /**
+     * @param wholeRecording whether the parser reads the whole recording, so that the size it
+     *     reports can refine the admission estimates of recordings of unknown size
+     */
+    private void generate(
+            ReportTask task,
+            long recordingBytes,
+            Supplier<CompletableFuture<Pair<IItemCollection, Long>>> parser,
+            Predicate<IRule> predicate,
+            boolean wholeRecording) {
+        long[] parseStart = new long[1];
+        admit(task, recordingBytes)
+                .thenComposeAsync(
+                        v -> {
+                            parseStart[0] = System.nanoTime();
+                            task.notifyMetrics(
+                                    m ->
+                                            m.queueWaited(
+                                                    Duration.ofNanos(parseStart[0] - task.start)));
+                            return parser.get();
+                        },
+                        qThread)
+                .thenAcceptAsync(
+                        p -> {
+                            Duration parseTime =
+                                    Duration.ofNanos(System.nanoTime() - parseStart[0]);
+                            // a recording shared from the cache was not parsed for this report,
+                            // so its reservation keeps the initial estimate
+                            if (p.right >= 0) {
+                                task.notifyMetrics(m -> m.recordingParsed(p.right, parseTime));
+                            }
+                            if (wholeRecording) {
+                                task.measured(p.right);
                             } else {
-                                score = eval.getSeverity().getLimit();
+                                task.resized(p.right);
                             }
-                            evalMap.put(eval.getRule().getId(), new AnalysisResult(score, eval));
-                        }
-                        return evalMap;
-                    } catch (InterruptedException
-                            | IOException
-                            | ExecutionException
-                            | CouldNotLoadRecordingException e) {
-                        throw new CompletionException(e);
-                    }
+                            task.complete(evaluate(task, p.left, predicate));
+                        },
+                        qThread)
+                .exceptionally(
+                        t -> {
+                            task.fail(t);
+                            return null;
+                        });
+    }
+
+    private void generateCached(
+            ReportTask task,
+            CompletableFuture<DigestedRecording> digested,
+            Predicate<IRule> predicate) {
+        // the recording must be read in full to compute its digest before the cache can be
+        // consulted. On a miss the recording is then parsed from the file that was digested.
+        digested.thenAcceptAsync(
+                        recording -> {
+                            task.result.whenComplete((m, t) -> recording.release());
+                            List<String> ruleIds =
+                                    this.rules.stream()
+                                            .filter(predicate)
+                                            .map(IRule::getId)
+                                            .collect(Collectors.toList());
+                            String key = ReportResultCache.key(recording.digest, ruleIds);
+                            Optional<Map<String, AnalysisResult>> cached = resultCache.get(key);
+                            if (cached.isPresent()) {
+                                cached.get().forEach(task::publish);
+                                task.result.complete(cached.get());
+                                return;
+                            }
+                            task.result.thenAccept(
+                                    evalMap -> {
+                                        // a report with timed out rules is incomplete
+                                        if (evalMap.values().stream()
+                                                .noneMatch(AnalysisResult::isTimedOut)) {
+                                            resultCache.put(key, evalMap);
+                                        }
+                                    });
+                            if (workerPool != null) {
+                                generateRemotely(task, recording.file, predicate);
+                                return;
+                            }
+                            generate(
+                                    task,
+                                    sizeOf(recording.file),
+                                    () ->
+                                            parseShared(
+                                                    task,
+                                                    recording.file,
+                                                    recording.digest,
+                                                    predicate),
+                                    predicate);
+                        },
+                        qThread)
+                .exceptionally(
+                        t -> {
+                            task.fail(t);
+                            return null;
+                        });
+    }
+
+    private void generateRemotely(
+            ReportTask task,
+            CompletableFuture<DigestedRecording> spooled,
+            Predicate<IRule> predicate) {
+        spooled.thenAcceptAsync(
+                        recording -> {
+                            task.result.whenComplete((m, t) -> recording.release());
+                            generateRemotely(task, recording.file, predicate);
+                        },
+                        qThread)
+                .exceptionally(
+                        t -> {
+                            task.fail(t);
+                            return null;
+                        });
+    }
+
+    /**
+     * Generate the report in a worker process. The recording's events never enter this JVM, so the
+     * report is not admitted against the heap budget, and only its overall outcome is reported to
+     * the metrics listener. Rule results are published once the whole report is done.
+     */
+    private void generateRemotely(ReportTask task, Path recording, Predicate<IRule> predicate) {
+        List<String> ruleIds =
+                this.rules.stream()
+                        .filter(predicate)
+                        .map(IRule::getId)
+                        .collect(Collectors.toList());
+        CompletableFuture<Map<String, AnalysisResult>> remote =
+                workerPool.submit(recording, ruleIds, ruleTimeout);
+        // cancelling the report, or its deadline passing, kills the worker running it
+        task.result.whenComplete((v, t) -> remote.cancel(true));
+        task.complete(
+                remote.thenApply(
+                        evalMap -> {
+                            evalMap.forEach(task::publish);
+                            return evalMap;
+                        }));
+    }
+
+    /**
+     * Wait until the recording's estimated heap footprint fits within the admission budget. The
+     * reservation is held until the report completes, since the parsed recording is retained until
+     * every rule has been evaluated.
+     */
+    private CompletableFuture<Void> admit(ReportTask task, long recordingBytes) {
+        if (admissionController == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<ReportAdmissionController.Reservation> reservation =
+                admissionController.reserve(recordingBytes);
+        task.result.whenComplete(
+                (v, t) -> {
+                    // withdraw from the queue if not yet admitted, otherwise return the budget
+                    reservation.cancel(false);
+                    reservation.thenAccept(ReportAdmissionController.Reservation::release);
                 });
+        return reservation.thenAccept(r -> task.reservation = r);
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            logger.warn("Failed to determine size of " + file, e);
+            return -1;
+        }
+    }
+
+    /** Copy the recording to a temporary file, computing its digest along the way. */
+    private DigestedRecording spool(InputStream recording) throws IOException {
+        MessageDigest digest = ReportResultCache.newDigest();
+        Path file = Files.createTempFile("cryostat-report-", ".jfr");
+        try (CountingInputStream countingRecordingStream =
+                new CountingInputStream(new DigestInputStream(recording, digest))) {
+            Files.copy(countingRecordingStream, file, StandardCopyOption.REPLACE_EXISTING);
+            return new DigestedRecording(file, digest.digest(), true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private DigestedRecording digest(Path file) throws IOException {
+        MessageDigest digest = ReportResultCache.newDigest();
+        try (InputStream is = new DigestInputStream(Files.newInputStream(file), digest)) {
+            is.transferTo(OutputStream.nullOutputStream());
+        }
+        return new DigestedRecording(file, digest.digest(), false);
+    }
+
+    /**
+     * Parse the whole recording, or share the parse with other reports on the same recording if a
+     * {@link ParsedRecordingCache} is configured. A shared recording is parsed with the events that
+     * every rule requires, so that it can serve any rule filter.
+     *
+     * @param digest the digest of the recording's bytes, or null to identify the recording by its
+     *     file
+     */
+    private CompletableFuture<Pair<IItemCollection, Long>> parseShared(
+            ReportTask task, Path file, byte[] digest, Predicate<IRule> predicate) {
+        if (recordingCache == null) {
+            return parseChunks(task, file, predicate);
+        }
+        return task.submit(
+                        () ->
+                                digest != null
+                                        ? ParsedRecordingCache.key(digest)
+                                        : ParsedRecordingCache.key(file))
+                .thenCompose(key -> recordingCache.get(key, () -> parseForSharing(task, file)));
+    }
+
+    private CompletableFuture<Pair<IItemCollection, Long>> parseForSharing(
+            ReportTask task, Path file) {
+        return parseChunks(task, file, rule -> true)
+                .exceptionallyCompose(
+                        t -> {
+                            // a parse cut short by the end of the report which started it is
+                            // abandoned, so the other reports waiting on it parse for themselves
+                            Throwable cause =
+                                    task.result.isDone() ? new CancellationException() : t;
+                            return CompletableFuture.failedFuture(cause);
+                        });
+    }
+
+    private CompletableFuture<Pair<IItemCollection, Long>> parseChunks(
+            ReportTask task, Path file, Predicate<IRule> predicate) {
+        return parseChunks(task, file, predicate, chunk -> true);
+    }
+
+    /**
+     * @param selector the chunks of the file to parse. If the file's chunk boundaries cannot be
+     *     determined then the whole file is parsed regardless.
+     */
+    private CompletableFuture<Pair<IItemCollection, Long>> parseChunks(
+            ReportTask task, Path file, Predicate<IRule> predicate, Predicate<JfrChunk> selector) {
+        return parseSelectedChunks(
+                task,
+                file,
+                predicate,
+                chunks -> chunks.stream().filter(selector).collect(Collectors.toList()));
+    }
+
+    /**
+     * @param selector selects the chunks of the file to parse from all of its chunks, in file
+     *     order. If the file's chunk boundaries cannot be determined then the whole file is parsed
+     *     regardless.
+     */
+    private CompletableFuture<Pair<IItemCollection, Long>> parseSelectedChunks(
+            ReportTask task,
+            Path file,
+            Predicate<IRule> predicate,
+            UnaryOperator<List<JfrChunk>> selector) {
+        return task.submit(() -> JfrChunk.readChunks(file))
+                .thenCompose(
+                        chunks -> {
+                            if (chunks.isEmpty() || chunks.get().isEmpty()) {
+                                return task.submit(() -> parse(file, predicate));
+                            }
+                            List<JfrChunk> selected = selector.apply(chunks.get());
+                            if (selected.isEmpty()) {
+                                return CompletableFuture.failedFuture(
+                                        new IllegalArgumentException(
+                                                "No chunk of "
+                                                        + file
+                                                        + " overlaps the requested time window"));
+                            }
+                            ChunkedRecordingLoader loader =
+                                    new ChunkedRecordingLoader(
+                                            file, selected, parserExtensions(predicate));
+                            List<CompletableFuture<Void>> parts = new ArrayList<>();
+                            long bytes = 0;
+                            for (JfrChunk chunk : selected) {
+                                parts.add(
+                                        task.submit(
+                                                () -> {
+                                                    loader.load(chunk);
+                                                    return null;
+                                                }));
+                                bytes += chunk.getSize();
+                            }
+                            long totalBytes = bytes;
+                            return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                                    .thenCompose(
+                                            v ->
+                                                    task.submit(
+                                                            () ->
+                                                                    new Pair<>(
+                                                                            loader.build(),
+                                                                            totalBytes)));
+                        });
+    }
+
+    /**
+     * Parse the chunks of the recording which the state does not already hold. The returned size is
+     * that of the newly parsed chunks only, so the report's admission reservation is resized to
+     * cover only the heap this report added; the retained chunks are held by the state.
+     */
+    private CompletableFuture<Pair<IItemCollection, Long>> parseIncrementally(
+            ReportTask task, Path file, IncrementalRecording state, Predicate<IRule> predicate) {
+        return task.submit(() -> JfrChunk.readChunks(file))
+                .thenCompose(
+                        chunks -> {
+                            if (chunks.isEmpty()) {
+                                // chunk boundaries cannot be determined, so nothing can be reused
+                                state.clear();
+                                return task.submit(() -> parse(file, predicate));
+                            }
+                            RequiredEventsParserExtension required = requiredEvents(predicate);
+                            List<IParserExtension> extensions = parserExtensions(required);
+                            IncrementalRecording.Window window =
+                                    state.update(chunks.get(), required.getDiscardedTypes());
+                            Map<JfrChunk, EventArrays> parsed = new ConcurrentHashMap<>();
+                            List<CompletableFuture<Void>> parts = new ArrayList<>();
+                            long bytes = 0;
+                            for (JfrChunk chunk : window.getUnparsed()) {
+                                parts.add(
+                                        task.submit(
+                                                () -> {
+                                                    parsed.put(
+                                                            chunk,
+                                                            ChunkedRecordingLoader.loadChunk(
+                                                                    file, chunk, extensions));
+                                                    return null;
+                                                }));
+                                bytes += chunk.getSize();
+                            }
+                            long parsedBytes = bytes;
+                            return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                                    .thenCompose(
+                                            v ->
+                                                    task.submit(
+                                                            () ->
+                                                                    new Pair<>(
+                                                                            state.build(
+                                                                                    window, parsed),
+                                                                            parsedBytes)));
+                        });
+    }
+
+    /**
+     * @return the events which overlap the window, along with the events describing the recording
+     *     and the JVM wherever they occur
+     */
+    private static IItemCollection within(IItemCollection items, long startNanos, long endNanos) {
+        IRange<IQuantity> window =
+                QuantityRange.createWithEnd(
+                        UnitLookup.EPOCH_NS.quantity(startNanos),
+                        UnitLookup.EPOCH_NS.quantity(endNanos));
+        return items.apply(
+                ItemFilters.or(
+                        ItemFilters.type(RequiredEventsParserExtension.ALWAYS_REQUIRED),
+                        ItemFilters.rangeIntersects(JfrAttributes.LIFETIME, window)));
+    }
+
+    private static long toEpochNanos(Instant instant) {
+        return Math.addExact(
+                Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    private Pair<IItemCollection, Long> parse(Path file, Predicate<IRule> predicate)
+            throws IOException, CouldNotLoadRecordingException {
+        try (InputStream is = Files.newInputStream(file)) {
+            return parse(is, predicate);
+        }
     }
 
-    private Pair<Collection<IResult>, Long> generateResultHelper(
-            InputStream recording, Predicate<IRule> predicate)
-            throws InterruptedException,
-                    IOException,
-                    ExecutionException,
-                    CouldNotLoadRecordingException {
-        ResultProvider resultProvider = new ResultProvider();
-        Map<IRule, Future<IResult>> resultFutures = new HashMap<>();
-        Queue<RunnableFuture<IResult>> futureQueue = new ConcurrentLinkedQueue<>();
-        // Map using the rule name as a key, and a Pair containing the rule (left) and it's
-        // dependency (right)
-        Map<String, Pair<IRule, IRule>> rulesWithDependencies = new HashMap<>();
-        Map<IRule, IResult> computedResults = new HashMap<>();
+    private Pair<IItemCollection, Long> parse(InputStream recording, Predicate<IRule> predicate)
+            throws IOException, CouldNotLoadRecordingException {
         try (CountingInputStream countingRecordingStream = new CountingInputStream(recording)) {
-            // TODO parsing the JFR file should also happen on the executor rather than the qThread,
-            // so that this method can return to the qThread more quickly and free up the ability to
-            // queue more work on the executor.
-            IItemCollection items = JfrLoaderToolkit.loadEvents(countingRecordingStream);
-            for (IRule rule : this.rules) {
-                if (predicate.test(rule)
-                        && RulesToolkit.matchesEventAvailabilityMap(
-                                items, rule.getRequiredEvents())) {
-                    if (hasDependency(rule)) {
-                        IRule depRule =
-                                this.rules.stream()
-                                        .filter(r -> r.getId().equals(getRuleDependencyName(rule)))
-                                        .findFirst()
-                                        .orElse(null);
-                        rulesWithDependencies.put(rule.getId(), new Pair<>(rule, depRule));
-                    } else {
-                        RunnableFuture<IResult> resultFuture =
-                                rule.createEvaluation(
-                                        items,
-                                        IPreferenceValueProvider.DEFAULT_VALUES,
-                                        resultProvider);
-                        resultFutures.put(rule, resultFuture);
-                        futureQueue.add(resultFuture);
-                    }
-                } else {
-                    resultFutures.put(
-                            rule,
-                            CompletableFuture.completedFuture(
-                                    ResultBuilder.createFor(
-                                                    rule, IPreferenceValueProvider.DEFAULT_VALUES)
-                                            .setSeverity(Severity.NA)
-                                            .build()));
-                }
+            IItemCollection items =
+                    JfrLoaderToolkit.loadEvents(
+                            countingRecordingStream, parserExtensions(predicate));
+            return new Pair<>(items, countingRecordingStream.getByteCount());
+        }
+    }
+
+    private List<IParserExtension> parserExtensions(Predicate<IRule> predicate) {
+        return parserExtensions(requiredEvents(predicate));
+    }
+
+    private List<IParserExtension> parserExtensions(RequiredEventsParserExtension required) {
+        List<IParserExtension> extensions =
+                new ArrayList<>(ParserExtensionRegistry.getParserExtensions());
+        extensions.add(required);
+        return extensions;
+    }
+
+    private RequiredEventsParserExtension requiredEvents(Predicate<IRule> predicate) {
+        // discard events that only the unselected rules would use as they are parsed, so that
+        // focused reports do not pay to retain the whole recording
+        return RequiredEventsParserExtension.forRules(this.rules, selectRules(predicate));
+    }
+
+    /**
+     * @return the rules accepted by the predicate, along with the rules they transitively depend on
+     */
+    private Set<IRule> selectRules(Predicate<IRule> predicate) {
+        Map<String, IRule> rulesById = new HashMap<>();
+        for (IRule rule : this.rules) {
+            rulesById.putIfAbsent(rule.getId(), rule);
+        }
+        Set<IRule> selected = new HashSet<>();
+        for (IRule rule : this.rules) {
+            IRule r = predicate.test(rule) ? rule : null;
+            while (r != null && selected.add(r)) {
+                r =
+                        RuleGraph.hasDependency(r)
+                                ? rulesById.get(RuleGraph.getRuleDependencyName(r))
+                                : null;
             }
-            // TODO this implementation forces rule dependencies to be evaluated on the qThread. The
-            // executor is only used for rules that have no dependencies or which have all their
-            // dependencies satisfied (by the qThread). Ideally we should perform all of the rule
-            // evaluations on executor threads.
-            for (Entry<String, Pair<IRule, IRule>> entry : rulesWithDependencies.entrySet()) {
-                IRule rule = entry.getValue().left;
-                IRule depRule = entry.getValue().right;
-                Future<IResult> depResultFuture = resultFutures.get(depRule);
-                if (depResultFuture == null) {
-                    resultFutures.put(
-                            rule,
-                            CompletableFuture.completedFuture(
-                                    ResultBuilder.createFor(
-                                                    rule, IPreferenceValueProvider.DEFAULT_VALUES)
-                                            .setSeverity(Severity.NA)
-                                            .build()));
-                } else {
-                    IResult depResult = null;
-                    if (!depResultFuture.isDone()) {
-                        ((Runnable) depResultFuture).run();
-                        try {
-                            depResult = depResultFuture.get();
-                            resultProvider.addResults(depResult);
-                            computedResults.put(depRule, depResult);
-                        } catch (InterruptedException | ExecutionException e) {
-                            logger.warn("Error retrieving results for rule: " + depResult);
-                        }
-                    } else {
-                        depResult = computedResults.get(depRule);
-                    }
-                    if (depResult != null && shouldEvaluate(rule, depResult)) {
-                        RunnableFuture<IResult> resultFuture =
-                                rule.createEvaluation(
-                                        items,
-                                        IPreferenceValueProvider.DEFAULT_VALUES,
-                                        resultProvider);
-                        resultFutures.put(rule, resultFuture);
-                        futureQueue.add(resultFuture);
-                    } else {
-                        resultFutures.put(
-                                rule,
-                                CompletableFuture.completedFuture(
-                                        ResultBuilder.createFor(
-                                                        rule,
-                                                        IPreferenceValueProvider.DEFAULT_VALUES)
-                                                .setSeverity(Severity.NA)
-                                                .build()));
-                    }
+        }
+        return selected;
+    }
+
+    private CompletableFuture<Map<String, AnalysisResult>> evaluate(
+            ReportTask task, IItemCollection items, Predicate<IRule> predicate) {
+        task.evaluating = true;
+        long itemCount = task.itemCount >= 0 ? task.itemCount : countItems(items);
+        RuleGraph graph =
+                new RuleGraph(
+                        task, rules, items, itemCount, predicate, ruleCostProfile, ruleTimeout);
+        Map<String, CompletableFuture<AnalysisResult>> results = new HashMap<>();
+        for (IRule rule : longestFirst(itemCount)) {
+            // each result is published as soon as its own evaluation completes, independently of
+            // the rest of the report, and before the report itself can complete
+            results.put(
+                    rule.getId(),
+                    graph.schedule(rule)
+                            .thenApply(
+                                    r -> {
+                                        boolean timedOut = task.isTimedOut(r);
+                                        if (timedOut) {
+                                            // only now is it known that the timeout won the race
+                                            // with the evaluation completing
+                                            task.notifyMetrics(m -> m.ruleTimedOut(rule.getId()));
+                                        }
+                                        AnalysisResult result =
+                                                toAnalysisResult(r, timedOut, task.approximate);
+                                        task.publish(rule.getId(), result);
+                                        return result;
+                                    }));
+        }
+        CompletableFuture<Void> all =
+                CompletableFuture.allOf(results.values().toArray(new CompletableFuture[0]));
+        all.whenCompleteAsync((v, t) -> ruleCostProfile.save(), qThread);
+        return all.thenApply(
+                v -> {
+                    Map<String, AnalysisResult> evalMap = new HashMap<>();
+                    results.forEach((id, r) -> evalMap.put(id, r.join()));
+                    return evalMap;
+                });
+    }
+
+    /**
+     * Order the rules so that the most expensive are scheduled first, a longest-processing-time
+     * heuristic which keeps an expensive rule from starting last and setting the report's duration.
+     * A rule's cost includes the most expensive chain of rules depending on it, since those cannot
+     * start until it completes. Rules which have not been measured yet are scheduled first, and
+     * rules of equal cost keep their registration order.
+     */
+    private List<IRule> longestFirst(long itemCount) {
+        Map<String, IRule> rulesById = new HashMap<>();
+        Map<IRule, List<IRule>> dependents = new HashMap<>();
+        for (IRule rule : this.rules) {
+            rulesById.putIfAbsent(rule.getId(), rule);
+        }
+        for (IRule rule : this.rules) {
+            if (RuleGraph.hasDependency(rule)) {
+                IRule depRule = rulesById.get(RuleGraph.getRuleDependencyName(rule));
+                if (depRule != null) {
+                    dependents.computeIfAbsent(depRule, k -> new ArrayList<>()).add(rule);
                 }
             }
-            RunnableFuture<IResult> resultFuture;
-            while ((resultFuture = futureQueue.poll()) != null) {
-                executor.submit(resultFuture);
-            }
-            Collection<IResult> results = new HashSet<IResult>();
-            for (Future<IResult> future : resultFutures.values()) {
-                results.add(future.get());
+        }
+        Map<IRule, Double> costs = new HashMap<>();
+        for (IRule rule : this.rules) {
+            pathCost(rule, itemCount, dependents, costs, new HashSet<>());
+        }
+        List<IRule> ordered = new ArrayList<>(this.rules);
+        ordered.sort(Comparator.comparingDouble((IRule r) -> costs.get(r)).reversed());
+        return ordered;
+    }
+
+    private double pathCost(
+            IRule rule,
+            long itemCount,
+            Map<IRule, List<IRule>> dependents,
+            Map<IRule, Double> costs,
+            Set<IRule> visiting) {
+        Double cost = costs.get(rule);
+        if (cost != null) {
+            return cost;
+        }
+        if (!visiting.add(rule)) {
+            // circular dependencies are reported when the rules are scheduled
+            return 0;
+        }
+        double longestDependent = 0;
+        for (IRule dependent : dependents.getOrDefault(rule, List.of())) {
+            longestDependent =
+                    Math.max(
+                            longestDependent,
+                            pathCost(dependent, itemCount, dependents, costs, visiting));
+        }
+        double own =
+                ruleCostProfile.estimate(rule.getId(), itemCount).orElse(Double.POSITIVE_INFINITY);
+        visiting.remove(rule);
+        costs.put(rule, own + longestDependent);
+        return own + longestDependent;
+    }
+
+    /**
+     * Cheap for a collection as parsed, whose event arrays know their own sizes, but a filtered
+     * collection is iterated in full to count the events which pass its filter.
+     */
+    private static long countItems(IItemCollection items) {
+        long count = 0;
+        for (IItemIterable iterable : items) {
+            count += iterable.getItemCount();
+        }
+        return count;
+    }
+
+    private class DigestedRecording {
+        final Path file;
+        final byte[] digest;
+        final boolean temporary;
+
+        DigestedRecording(Path file, byte[] digest, boolean temporary) {
+            this.file = file;
+            this.digest = digest;
+            this.temporary = temporary;
+        }
+
+        void release() {
+            if (!temporary) {
+                return;
             }
-            return new Pair<Collection<IResult>, Long>(
-                    results, countingRecordingStream.getByteCount());
-        } catch (InterruptedException
-                | IOException
-                | ExecutionException
-                | CouldNotLoadRecordingException e) {
-            for (Future<?> f : resultFutures.values()) {
-                if (!f.isDone()) {
-                    f.cancel(true);
-                }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete spooled recording " + file, e);
             }
-            logger.warn("Exception thrown", e);
-            throw e;
         }
     }
 
-    public static class AnalysisResult {
+    private AnalysisResult toAnalysisResult(IResult eval, boolean timedOut, boolean approximate) {
+        IQuantity scoreQuantity = eval.getResult(TypedResult.SCORE);
+        double score;
+        if (scoreQuantity != null) {
+            score = scoreQuantity.doubleValue();
+        } else {
+            score = eval.getSeverity().getLimit();
+        }
+        AnalysisResult result = new AnalysisResult(score, eval, timedOut, lazyEvaluations);
+        result.approximate = approximate;
+        return result;
+    }
+
+    public static class AnalysisResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private String name;
         private String topic;
         private double score;
         private Evaluation evaluation;
+        private boolean timedOut;
+        private boolean approximate;
 
         AnalysisResult() {}
 
@@ -240,12 +1005,13 @@ public class InterruptibleReportGenerator {
             this.evaluation = evaluation;
         }
 
-        AnalysisResult(double score, IResult result) {
+        AnalysisResult(double score, IResult result, boolean timedOut, boolean lazy) {
             this(
                     result.getRule().getName(),
                     result.getRule().getTopic(),
                     score,
-                    new Evaluation(result));
+                    new Evaluation(result, lazy));
+            this.timedOut = timedOut;
         }
 
         public double getScore() {
@@ -260,46 +1026,115 @@ public class InterruptibleReportGenerator {
             return topic;
         }
 
+        @SuppressFBWarnings(
+                value = "EI_EXPOSE_REP",
+                justification = "the evaluation is only mutated to render its own messages")
         public Evaluation getEvaluation() {
             return evaluation;
         }
 
-        public static class Evaluation {
+        /**
+         * @return true if the rule's evaluation was cancelled for exceeding its deadline, in which
+         *     case the score is that of a not applicable result
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return true if the rule was evaluated on only a sample of the recording, in which case
+         *     the score may differ from that of the full recording
+         */
+        public boolean isApproximate() {
+            return approximate;
+        }
+
+        /**
+         * The rule's messages, with their placeholders filled in from its result. An evaluation may
+         * be rendered lazily, in which case the messages are only rendered the first time any of
+         * them is read, and the rule's result is retained until then.
+         */
+        public static class Evaluation implements Serializable {
+            private static final long serialVersionUID = 1L;
+
             private String summary;
             private String explanation;
             private String solution;
             private List<Suggestion> suggestions;
+            private transient IResult result;
 
             Evaluation() {}
 
-            Evaluation(IResult result) {
-                this.summary = ResultToolkit.populateMessage(result, result.getSummary(), false);
-                this.explanation =
-                        ResultToolkit.populateMessage(result, result.getExplanation(), false);
-                this.solution = ResultToolkit.populateMessage(result, result.getSolution(), false);
-                this.suggestions =
-                        result.suggestRecordingSettings().stream()
-                                .map(Suggestion::new)
-                                .collect(Collectors.toList());
+            Evaluation(
+                    String summary,
+                    String explanation,
+                    String solution,
+                    List<Suggestion> suggestions) {
+                this.summary = summary;
+                this.explanation = explanation;
+                this.solution = solution;
+                this.suggestions = new ArrayList<>(suggestions);
+            }
+
+            Evaluation(IResult result, boolean lazy) {
+                this.result = result;
+                if (!lazy) {
+                    render();
+                }
             }
 
-            public String getSummary() {
+            public synchronized String getSummary() {
+                render();
                 return summary;
             }
 
-            public String getExplanation() {
+            public synchronized String getExplanation() {
+                render();
                 return explanation;
             }
 
-            public String getSolution() {
+            public synchronized String getSolution() {
+                render();
                 return solution;
             }
 
-            public List<Suggestion> getSuggestions() {
+            public synchronized List<Suggestion> getSuggestions() {
+                render();
                 return Collections.unmodifiableList(suggestions);
             }
 
-            public static class Suggestion {
+            /**
+             * @return true if the messages have been rendered, ex. because they were read or
+             *     because the evaluation was not lazy
+             */
+            synchronized boolean isRendered() {
+                return result == null;
+            }
+
+            private synchronized void render() {
+                if (result == null) {
+                    return;
+                }
+                this.summary = ResultToolkit.populateMessage(result, result.getSummary(), false);
+                this.explanation =
+                        ResultToolkit.populateMessage(result, result.getExplanation(), false);
+                this.solution = ResultToolkit.populateMessage(result, result.getSolution(), false);
+                this.suggestions =
+                        result.suggestRecordingSettings().stream()
+                                .map(Suggestion::new)
+                                .collect(Collectors.toList());
+                // the result may reference the recording's events, which need not outlive it
+                this.result = null;
+            }
+
+            private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+                render();
+                out.defaultWriteObject();
+            }
+
+            public static class Suggestion implements Serializable {
+                private static final long serialVersionUID = 1L;
+
                 private String name;
                 private String setting;
                 private String value;
@@ -327,25 +1162,141 @@ public class InterruptibleReportGenerator {
         }
     }
 
-    private static String getRuleDependencyName(IRule rule) {
-        DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
-        Class<? extends IRule> dependencyType = dependency.value();
-        return dependencyType.getSimpleName();
-    }
+    public static class Builder {
+        private final ExecutorService executor;
+        private ReportResultCache resultCache;
+        private ParsedRecordingCache recordingCache;
+        private ReportWorkerPool workerPool;
+        private ReportAdmissionController admissionController;
+        private ReportMetricsListener metrics = ReportMetricsListener.NOOP;
+        private Duration reportTimeout;
+        private Duration ruleTimeout;
+        private boolean lazyEvaluations;
+        private RuleCostProfile ruleCostProfile = new RuleCostProfile();
 
-    private static boolean hasDependency(IRule rule) {
-        DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
-        return dependency != null;
-    }
+        private Builder(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * @param executor the executor to parse recordings and evaluate rules on
+         */
+        public static Builder create(ExecutorService executor) {
+            return new Builder(Objects.requireNonNull(executor));
+        }
+
+        /**
+         * @param resultCache a cache of previously generated reports, or null to always generate
+         *     reports from scratch
+         */
+        @SuppressFBWarnings(
+                value = "EI_EXPOSE_REP2",
+                justification = "the cache is intentionally shared between report generators")
+        public Builder resultCache(ReportResultCache resultCache) {
+            this.resultCache = resultCache;
+            return this;
+        }
+
+        /**
+         * @param recordingCache a cache of parsed recordings to share between reports on the same
+         *     recording, or null to parse the recording for each report. Only reports on whole
+         *     recordings are shared, not those on a time window or incremental reports. Reports on
+         *     an {@link InputStream} are only shared if a {@link #resultCache(ReportResultCache)
+         *     result cache} is also configured, since otherwise the stream is parsed as it is read
+         *     rather than first spooled to a file which can be identified by its digest. Reports
+         *     generated by a {@link #workerPool(ReportWorkerPool) worker pool} are never shared.
+         */
+        @SuppressFBWarnings(
+                value = "EI_EXPOSE_REP2",
+                justification = "the cache is intentionally shared between report generators")
+        public Builder recordingCache(ParsedRecordingCache recordingCache) {
+            this.recordingCache = recordingCache;
+            return this;
+        }
+
+        /**
+         * @param workerPool a pool of worker processes to generate reports on whole recordings in,
+         *     or null to generate every report in this JVM. Reports on a time window, previews and
+         *     incremental reports are always generated in this JVM. Reports generated by workers do
+         *     not use the parsed-recording cache, the admission controller or the rule cost
+         *     profile, but do use the result cache.
+         */
+        public Builder workerPool(ReportWorkerPool workerPool) {
+            this.workerPool = workerPool;
+            return this;
+        }
+
+        /**
+         * @param admissionController the heap budget that parsed recordings must fit within, or
+         *     null to parse any number of recordings concurrently
+         */
+        public Builder admissionController(ReportAdmissionController admissionController) {
+            this.admissionController = admissionController;
+            return this;
+        }
+
+        /**
+         * @param metrics the listener to report stage and rule timings to
+         */
+        public Builder metricsListener(ReportMetricsListener metrics) {
+            this.metrics = Objects.requireNonNull(metrics);
+            return this;
+        }
+
+        /**
+         * @param reportTimeout the time after which a report is completed with whichever rule
+         *     results are available, measured from when the report is requested. Rules still
+         *     pending at that point are cancelled and marked as timed out. If the recording has not
+         *     been parsed by then the report fails with a {@link TimeoutException}. Null for no
+         *     limit.
+         */
+        public Builder reportTimeout(Duration reportTimeout) {
+            this.reportTimeout = requirePositive(reportTimeout);
+            return this;
+        }
+
+        /**
+         * @param ruleTimeout the time after which a single rule's evaluation is cancelled and
+         *     marked as timed out, measured from when its evaluation begins. Null for no limit.
+         */
+        public Builder ruleTimeout(Duration ruleTimeout) {
+            this.ruleTimeout = requirePositive(ruleTimeout);
+            return this;
+        }
+
+        /**
+         * @param lazyEvaluations true to render each result's messages and suggestions only when
+         *     they are first read from its {@link AnalysisResult.Evaluation}, rather than as soon
+         *     as the rule is evaluated. Callers which only read scores then skip rendering
+         *     entirely, but each result retains its rule's result, and possibly the recording's
+         *     events, until it is rendered or discarded. Serializers which read fields directly
+         *     rather than through the getters see no messages for an unrendered evaluation. Reports
+         *     stored in a {@link ReportResultCache} are always rendered.
+         */
+        public Builder lazyEvaluations(boolean lazyEvaluations) {
+            this.lazyEvaluations = lazyEvaluations;
+            return this;
+        }
+
+        /**
+         * @param ruleCostProfile the historical costs of the rules, used to schedule the most
+         *     expensive rules of each report first and updated as rules are evaluated. Defaults to
+         *     a profile held in memory by this generator only.
+         */
+        public Builder ruleCostProfile(RuleCostProfile ruleCostProfile) {
+            this.ruleCostProfile = Objects.requireNonNull(ruleCostProfile);
+            return this;
+        }
+
+        public InterruptibleReportGenerator build() {
+            return new InterruptibleReportGenerator(this);
+        }
 
-    /** Brought over from org.openjdk.jmc.flightrecorder.rules.jdk.util.RulesToolkit */
-    private static boolean shouldEvaluate(IRule rule, IResult depResult) {
-        DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
-        if (dependency != null) {
-            if (depResult.getSeverity().compareTo(dependency.severity()) < 0) {
-                return false;
+        private static Duration requirePositive(Duration timeout) {
+            if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+                throw new IllegalArgumentException("timeout must be positive");
             }
+            return timeout;
         }
-        return true;
     }
 }
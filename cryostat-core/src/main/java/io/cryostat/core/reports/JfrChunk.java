@@ -0,0 +1,152 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Location and timing of a single chunk within a JFR file, as described by the chunk's header. A
+ * JFR file is a sequence of self-contained chunks, and each chunk is itself a valid JFR file, so
+ * chunks can be parsed independently of each other.
+ */
+class JfrChunk {
+
+    static final int HEADER_SIZE = 68;
+    private static final int MAGIC = 0x464c5200; // "FLR\0"
+    private static final int MIN_MAJOR_VERSION = 1;
+
+    private final short majorVersion;
+    private final short minorVersion;
+    private final long position;
+    private final long size;
+    private final long startNanos;
+    private final long durationNanos;
+
+    JfrChunk(
+            short majorVersion,
+            short minorVersion,
+            long position,
+            long size,
+            long startNanos,
+            long durationNanos) {
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+        this.position = position;
+        this.size = size;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+    }
+
+    short getMajorVersion() {
+        return majorVersion;
+    }
+
+    short getMinorVersion() {
+        return minorVersion;
+    }
+
+    /**
+     * @return the offset of the start of this chunk within the file
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the size of this chunk in bytes, including its header
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the chunk's start time, in nanoseconds since the epoch
+     */
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return the chunk's end time, in nanoseconds since the epoch
+     */
+    long getEndNanos() {
+        return startNanos + durationNanos;
+    }
+
+    long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Read the chunk headers of a JFR file.
+     *
+     * @return the chunks in the order they appear in the file, or empty if the file's chunk
+     *     boundaries cannot be determined from its headers (ex. it uses the pre-JDK 9 format or is
+     *     truncated). Such files can still be parsed as a whole.
+     */
+    static Optional<List<JfrChunk>> readChunks(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readChunks(channel);
+        }
+    }
+
+    static Optional<List<JfrChunk>> readChunks(FileChannel channel) throws IOException {
+        List<JfrChunk> chunks = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        long fileSize = channel.size();
+        long position = 0;
+        while (position < fileSize) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, position + header.position()) < 0) {
+                    return Optional.empty();
+                }
+            }
+            header.flip();
+            Optional<JfrChunk> chunk = parseHeader(header, position, fileSize);
+            if (chunk.isEmpty()) {
+                return Optional.empty();
+            }
+            chunks.add(chunk.get());
+            position += chunk.get().getSize();
+        }
+        return Optional.of(Collections.unmodifiableList(chunks));
+    }
+
+    static Optional<JfrChunk> parseHeader(ByteBuffer header, long position, long fileSize) {
+        if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            return Optional.empty();
+        }
+        short major = header.getShort(4);
+        short minor = header.getShort(6);
+        long size = header.getLong(8);
+        if (major < MIN_MAJOR_VERSION || size < HEADER_SIZE || position + size > fileSize) {
+            return Optional.empty();
+        }
+        long startNanos = header.getLong(32);
+        long durationNanos = header.getLong(40);
+        return Optional.of(new JfrChunk(major, minor, position, size, startNanos, durationNanos));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.util.Pair;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Cache of parsed recordings, shared between reports on the same recording so that requests with
+ * different rule filters arriving close together parse it only once. Concurrent requests for a
+ * recording which is still being parsed wait for that parse rather than starting their own.
+ * Recordings are held in least-recently-used order, bounded by the total size of the recordings as
+ * they were read. Their parsed form occupies several times that much heap, and unlike the heap of
+ * recordings being parsed for a report it is not accounted for by a {@link
+ * ReportAdmissionController}.
+ */
+public final class ParsedRecordingCache {
+
+    public static final long DEFAULT_MAX_BYTES = 256 * 1024 * 1024;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    public ParsedRecordingCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes the maximum total size of the recordings to retain, as read from disk
+     */
+    public ParsedRecordingCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Compute the cache key for a recording on local disk. The key changes whenever the file is
+     * replaced or modified.
+     */
+    public static String key(Path file) throws IOException {
+        return "file:"
+                + file.toRealPath()
+                + ":"
+                + Files.size(file)
+                + ":"
+                + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    /**
+     * Compute the cache key for a recording identified by its contents.
+     *
+     * @param recordingDigest the digest of the recording's bytes, as computed by {@link
+     *     ReportResultCache#newDigest()}
+     */
+    public static String key(byte[] recordingDigest) {
+        return "digest:" + Hex.encodeHexString(recordingDigest);
+    }
+
+    /**
+     * Get a parsed recording, parsing it with the given loader if it is neither cached nor already
+     * being parsed. If the parse this request is waiting on is abandoned, ex. because the report
+     * which started it was cancelled, then this request parses the recording itself instead.
+     *
+     * @param loader parses the recording, returning it along with the number of bytes read. Its
+     *     future should fail with a {@link CancellationException} if the parse was abandoned.
+     * @return the recording, along with the number of bytes this request itself read, which is -1
+     *     if the recording was already cached or parsed for another request
+     */
+    CompletableFuture<Pair<IItemCollection, Long>> get(
+            String key, Supplier<CompletableFuture<Pair<IItemCollection, Long>>> loader) {
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            return entry.items
+                    .thenApply(items -> new Pair<>(items, -1L))
+                    .exceptionallyCompose(
+                            t ->
+                                    isCancellation(t)
+                                            ? get(key, loader)
+                                            : CompletableFuture.failedFuture(t));
+        }
+        Entry loading = entry;
+        CompletableFuture<Pair<IItemCollection, Long>> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        return load.whenComplete(
+                (p, t) -> {
+                    if (t != null) {
+                        synchronized (this) {
+                            entries.remove(key, loading);
+                        }
+                        loading.items.completeExceptionally(t);
+                    } else {
+                        loaded(key, loading, p.right);
+                        loading.items.complete(p.left);
+                    }
+                });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        // recordings still being parsed remain so that their waiters are not orphaned
+        entries.values().removeIf(e -> e.items.isDone());
+        currentBytes = 0;
+    }
+
+    private synchronized void loaded(String key, Entry entry, long bytes) {
+        if (entries.get(key) != entry) {
+            // cleared while being parsed
+            return;
+        }
+        entry.bytes = bytes;
+        currentBytes += bytes;
+        Iterator<Entry> it = entries.values().iterator();
+        // always retain the most recent recording, even if it alone exceeds the byte budget
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            if (eldest != entry && eldest.items.isDone()) {
+                currentBytes -= eldest.bytes;
+                it.remove();
+            }
+        }
+    }
+
+    private static boolean isCancellation(Throwable t) {
+        return t instanceof CancellationException
+                || (t instanceof CompletionException
+                        && t.getCause() instanceof CancellationException);
+    }
+
+    private static class Entry {
+        final CompletableFuture<IItemCollection> items = new CompletableFuture<>();
+        long bytes;
+    }
+}
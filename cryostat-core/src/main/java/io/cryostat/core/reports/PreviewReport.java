@@ -0,0 +1,58 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+/**
+ * An approximate report on a sample of a recording, followed by the full report on the whole
+ * recording.
+ *
+ * @see InterruptibleReportGenerator#generatePreviewInterruptibly(java.nio.file.Path, double,
+ *     java.util.function.Predicate)
+ */
+public final class PreviewReport {
+
+    private final Future<Map<String, AnalysisResult>> preview;
+    private final Future<Map<String, AnalysisResult>> report;
+
+    PreviewReport(
+            Future<Map<String, AnalysisResult>> preview,
+            Future<Map<String, AnalysisResult>> report) {
+        this.preview = preview;
+        this.report = report;
+    }
+
+    /**
+     * @return the report on the sampled chunks, each of whose results is marked as approximate.
+     *     Cancelling it only cancels the preview.
+     */
+    public Future<Map<String, AnalysisResult>> getPreview() {
+        return preview;
+    }
+
+    /**
+     * @return the report on the whole recording, which is started once the preview is done.
+     *     Cancelling it before then prevents it from starting at all. Its report timeout, if any,
+     *     is measured from when the preview was requested.
+     */
+    public Future<Map<String, AnalysisResult>> getReport() {
+        return report;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Selects the chunks of a recording to analyze for a preview report. */
+final class PreviewSampler {
+
+    private PreviewSampler() {}
+
+    /**
+     * @return the expected size of a sample of a recording, or -1 if the recording's size is
+     *     unknown
+     */
+    static long sampleSize(long recordingBytes, double ratio) {
+        return recordingBytes < 0 ? -1 : (long) (recordingBytes * ratio);
+    }
+
+    /**
+     * @return the given fraction of the chunks, rounded up, taken from the middle of equal
+     *     intervals across the recording
+     */
+    static List<JfrChunk> sample(List<JfrChunk> chunks, double ratio) {
+        int n = chunks.size();
+        int k = Math.max(1, Math.min(n, (int) Math.ceil(n * ratio)));
+        List<JfrChunk> sampled = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            sampled.add(chunks.get((int) ((2L * i + 1) * n / (2L * k))));
+        }
+        return sampled;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bounds the heap used by concurrent report generations. Each report reserves an estimate of the
+ * heap its parsed recording will occupy before parsing begins, and releases it once the report is
+ * complete. The estimate is the recording's size in bytes scaled by a configurable multiplier.
+ * Recordings of unknown size are estimated from the average size of the recordings actually parsed
+ * so far. Reports which do not fit into the remaining budget wait in first-come first-served order,
+ * and are rejected immediately if too many are already waiting.
+ */
+public final class ReportAdmissionController {
+
+    public static final double DEFAULT_HEAP_MULTIPLIER = 5.0;
+    public static final int DEFAULT_MAX_QUEUED = 16;
+    public static final long DEFAULT_UNKNOWN_RECORDING_BYTES = 64 * 1024 * 1024;
+
+    private final long budgetBytes;
+    private final double heapMultiplier;
+    private final int maxQueued;
+    private final Object lock = new Object();
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private long reservedBytes;
+    private long observedRecordings;
+    private long observedRecordingBytes;
+
+    /**
+     * @param budgetBytes the total heap, in bytes, that concurrent reports may reserve
+     */
+    public ReportAdmissionController(long budgetBytes) {
+        this(budgetBytes, DEFAULT_HEAP_MULTIPLIER, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * @param budgetBytes the total heap, in bytes, that concurrent reports may reserve
+     * @param heapMultiplier the ratio of a parsed recording's heap footprint to its size on disk
+     * @param maxQueued the maximum number of reports which may wait for budget to become available
+     *     before further reports are rejected. 0 rejects any report which does not fit immediately.
+     */
+    public ReportAdmissionController(long budgetBytes, double heapMultiplier, int maxQueued) {
+        if (budgetBytes < 1) {
+            throw new IllegalArgumentException("budgetBytes must be positive");
+        }
+        if (!(heapMultiplier > 0)) {
+            throw new IllegalArgumentException("heapMultiplier must be positive");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued must not be negative");
+        }
+        this.budgetBytes = budgetBytes;
+        this.heapMultiplier = heapMultiplier;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Reserve heap for parsing a recording.
+     *
+     * @param recordingBytes the size of the recording in bytes, or a negative value if unknown
+     * @return a future completing with the reservation once it has been admitted, or failing with
+     *     {@link AdmissionRejectedException} if the report cannot be queued. Cancelling the future
+     *     withdraws the request from the queue.
+     */
+    public CompletableFuture<Reservation> reserve(long recordingBytes) {
+        List<Waiter> admitted;
+        CompletableFuture<Reservation> future = new CompletableFuture<>();
+        synchronized (lock) {
+            Waiter waiter = new Waiter(future, estimate(recordingBytes));
+            queue.removeIf(w -> w.future.isDone());
+            boolean immediate = queue.isEmpty() && fits(waiter.bytes);
+            if (!immediate && queue.size() >= maxQueued) {
+                return CompletableFuture.failedFuture(
+                        new AdmissionRejectedException(waiter.bytes, budgetBytes, maxQueued));
+            }
+            queue.add(waiter);
+            admitted = dispatch();
+        }
+        complete(admitted);
+        return future;
+    }
+
+    public long getReservedBytes() {
+        synchronized (lock) {
+            return reservedBytes;
+        }
+    }
+
+    public int getQueueLength() {
+        synchronized (lock) {
+            return (int) queue.stream().filter(w -> !w.future.isDone()).count();
+        }
+    }
+
+    /**
+     * @return the heap estimate for a recording of the given size, in bytes. A single report may
+     *     always reserve the entire budget, so that recordings larger than the budget can still be
+     *     analyzed one at a time.
+     */
+    long estimate(long recordingBytes) {
+        synchronized (lock) {
+            long bytes = recordingBytes;
+            if (bytes < 0) {
+                bytes =
+                        observedRecordings == 0
+                                ? DEFAULT_UNKNOWN_RECORDING_BYTES
+                                : observedRecordingBytes / observedRecordings;
+            }
+            return Math.max(1, Math.min(budgetBytes, (long) (bytes * heapMultiplier)));
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return reservedBytes == 0 || reservedBytes + bytes <= budgetBytes;
+    }
+
+    private List<Waiter> dispatch() {
+        List<Waiter> admitted = new ArrayList<>();
+        Waiter head;
+        while ((head = queue.peek()) != null) {
+            if (head.future.isDone()) {
+                queue.poll();
+                continue;
+            }
+            // strictly first-come first-served, so that a large report is not starved by a stream
+            // of smaller ones
+            if (!fits(head.bytes)) {
+                break;
+            }
+            queue.poll();
+            reservedBytes += head.bytes;
+            admitted.add(head);
+        }
+        return admitted;
+    }
+
+    // futures are completed outside of the lock, since completing them runs their dependents
+    private void complete(List<Waiter> admitted) {
+        for (Waiter waiter : admitted) {
+            Reservation reservation = new Reservation(waiter.bytes);
+            if (!waiter.future.complete(reservation)) {
+                // cancelled after it was admitted
+                reservation.release();
+            }
+        }
+    }
+
+    private static class Waiter {
+        final CompletableFuture<Reservation> future;
+        final long bytes;
+
+        Waiter(CompletableFuture<Reservation> future, long bytes) {
+            this.future = future;
+            this.bytes = bytes;
+        }
+    }
+
+    /** Heap reserved for a single report. */
+    public final class Reservation {
+        private long bytes;
+        private boolean released;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            synchronized (lock) {
+                return bytes;
+            }
+        }
+
+        /**
+         * Resize this reservation from the actual size of the recording, once it is known. The size
+         * is also recorded to refine the estimates of later recordings of unknown size, so it
+         * should be that of a whole recording which this report parsed.
+         */
+        public void update(long recordingBytes) {
+            if (recordingBytes < 0) {
+                return;
+            }
+            synchronized (lock) {
+                observedRecordings++;
+                observedRecordingBytes += recordingBytes;
+            }
+            resize(recordingBytes);
+        }
+
+        /**
+         * Resize this reservation to cover a recording of the given size, without recording the
+         * size for the estimates of later recordings, ex. because the report parsed only part of
+         * it.
+         */
+        public void resize(long recordingBytes) {
+            if (recordingBytes < 0) {
+                return;
+            }
+            List<Waiter> admitted;
+            synchronized (lock) {
+                if (released) {
+                    return;
+                }
+                long actual = estimate(recordingBytes);
+                reservedBytes += actual - bytes;
+                bytes = actual;
+                admitted = dispatch();
+            }
+            complete(admitted);
+        }
+
+        /** Return this reservation to the budget. Subsequent calls have no effect. */
+        public void release() {
+            List<Waiter> admitted;
+            synchronized (lock) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                reservedBytes -= bytes;
+                admitted = dispatch();
+            }
+            complete(admitted);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    public static class AdmissionRejectedException extends Exception {
+        AdmissionRejectedException(long bytes, long budgetBytes, int maxQueued) {
+            super(
+                    String.format(
+                            "Report requiring an estimated %d bytes of a %d byte heap budget was"
+                                    + " rejected: %d reports are already waiting",
+                            bytes, budgetBytes, maxQueued));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+/**
+ * The reports of a single batch. Stages of every report in the batch are dispatched through a
+ * shared {@link RoundRobinScheduler}, each report being a separate lane, and a new report is
+ * started whenever one completes.
+ */
+final class ReportBatch<K> {
+
+    final CompletableFuture<BatchReport<K>> result = new CompletableFuture<>();
+    private final RoundRobinScheduler scheduler;
+    private final Function<Function<Runnable, Future<?>>, ReportTask> newTask;
+    private final BiConsumer<ReportTask, Path> generate;
+    private final Iterator<Map.Entry<K, Path>> pending;
+    private final Set<ReportTask> running = new HashSet<>();
+    private final Map<K, Map<String, AnalysisResult>> reports = new LinkedHashMap<>();
+    private final Map<K, Throwable> failures = new LinkedHashMap<>();
+    private int remaining;
+
+    /**
+     * @param executor the executor the stages of every report take turns on
+     * @param newTask creates a report whose stages are handed to the given dispatcher
+     * @param generate starts generating the given report on the given recording
+     */
+    ReportBatch(
+            Map<K, Path> recordings,
+            Executor executor,
+            Function<Function<Runnable, Future<?>>, ReportTask> newTask,
+            BiConsumer<ReportTask, Path> generate) {
+        this.scheduler =
+                new RoundRobinScheduler(executor, Runtime.getRuntime().availableProcessors());
+        this.newTask = newTask;
+        this.generate = generate;
+        this.pending = new ArrayList<>(recordings.entrySet()).iterator();
+        this.remaining = recordings.size();
+        result.whenComplete(
+                (v, t) -> {
+                    if (result.isCancelled()) {
+                        List<ReportTask> cancelled;
+                        synchronized (this) {
+                            cancelled = new ArrayList<>(running);
+                        }
+                        cancelled.forEach(task -> task.result.cancel(true));
+                    }
+                });
+    }
+
+    void startNext() {
+        Map.Entry<K, Path> next;
+        ReportTask task;
+        synchronized (this) {
+            if (result.isDone() || !pending.hasNext()) {
+                return;
+            }
+            next = pending.next();
+            Object lane = new Object();
+            task = newTask.apply(stage -> scheduler.submit(lane, stage));
+            running.add(task);
+        }
+        task.result.whenComplete(
+                (evalMap, t) -> {
+                    synchronized (this) {
+                        running.remove(task);
+                        if (t == null) {
+                            reports.put(next.getKey(), evalMap);
+                        } else {
+                            failures.put(next.getKey(), t);
+                        }
+                        remaining--;
+                    }
+                    startNext();
+                    completeIfDone();
+                });
+        generate.accept(task, next.getValue());
+    }
+
+    void completeIfDone() {
+        BatchReport<K> report;
+        synchronized (this) {
+            if (remaining > 0) {
+                return;
+            }
+            report = new BatchReport<>(reports, failures);
+        }
+        result.complete(report);
+    }
+}
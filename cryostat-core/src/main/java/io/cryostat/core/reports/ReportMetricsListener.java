@@ -0,0 +1,83 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.time.Duration;
+
+/**
+ * Receives timings for each stage of report generation, so that they can be recorded into whatever
+ * metrics registry the application uses. Methods may be called concurrently from several threads,
+ * and should return quickly. Every method has a no-op default, so implementations need only
+ * override those they are interested in.
+ */
+public interface ReportMetricsListener {
+
+    ReportMetricsListener NOOP = new ReportMetricsListener() {};
+
+    /**
+     * @param wait the time between the report being requested and parsing of its recording
+     *     beginning, including any time spent waiting for admission
+     */
+    default void queueWaited(Duration wait) {}
+
+    /**
+     * Not called for reports which share a recording already parsed for another report.
+     *
+     * @param bytes the size of the parsed recording
+     * @param duration the time taken to parse the recording
+     */
+    default void recordingParsed(long bytes, Duration duration) {}
+
+    /**
+     * @param ruleId the ID of the rule which was evaluated
+     * @param duration the time taken to evaluate the rule, excluding any time spent waiting for its
+     *     dependency or for an executor thread
+     */
+    default void ruleEvaluated(String ruleId, Duration duration) {}
+
+    /**
+     * @param ruleId the ID of a rule whose evaluation was cancelled for exceeding its deadline
+     */
+    default void ruleTimedOut(String ruleId) {}
+
+    /**
+     * @param duration the time between the report being requested and completing successfully
+     */
+    default void reportCompleted(Duration duration) {}
+
+    /**
+     * @param duration the time between the report being requested and being cancelled
+     */
+    default void reportCancelled(Duration duration) {}
+
+    /**
+     * @param cause the exception which failed the report
+     * @param duration the time between the report being requested and failing
+     */
+    default void reportFailed(Throwable cause, Duration duration) {}
+
+    /**
+     * @return the throughput of a parse in megabytes (2^20 bytes) per second, or 0 if the parse
+     *     took no measurable time
+     */
+    static double megabytesPerSecond(long bytes, Duration duration) {
+        long nanos = duration.toNanos();
+        if (nanos <= 0) {
+            return 0;
+        }
+        return (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult.Evaluation;
+
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content-addressed cache of report results. Entries are keyed by the digest of the recording's
+ * bytes combined with the canonical set of rule IDs selected for evaluation, so the same recording
+ * analyzed with the same rule filter maps to the same entry regardless of where the recording came
+ * from. Entries are held in memory in least-recently-used order, bounded by both an entry count and
+ * an estimated size in bytes. If a directory is configured then entries are also written through to
+ * disk, and memory misses fall back to that tier. Disk reads and writes happen outside of the
+ * cache's lock, so that they do not hold up lookups of other entries.
+ */
+public final class ReportResultCache {
+
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+    public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private static final String DISK_ENTRY_SUFFIX = ".report";
+    private static final ObjectInputFilter DISK_ENTRY_FILTER =
+            ObjectInputFilter.Config.createFilter(
+                    // HashMap and ArrayList also check their backing array element types
+                    "java.util.HashMap;java.util.Map$Entry;java.util.ArrayList;java.lang.Object;"
+                            + "java.lang.String;"
+                            + AnalysisResult.class.getName()
+                            + "*;!*");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Path directory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    // incremented by clear(), so that entries read or written concurrently are not resurrected
+    private long generation;
+
+    public ReportResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, null);
+    }
+
+    /**
+     * @param maxEntries the maximum number of reports to retain in memory
+     * @param maxBytes the maximum estimated size of the reports retained in memory
+     * @param directory a directory to persist reports into, or null to keep reports in memory only
+     */
+    public ReportResultCache(int maxEntries, long maxBytes, Path directory) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implementation is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compute the cache key for a report.
+     *
+     * @param recordingDigest the digest of the recording's bytes, as computed by {@link
+     *     #newDigest()}
+     * @param ruleIds the IDs of the rules selected for evaluation. Order and duplicates do not
+     *     affect the key.
+     */
+    public static String key(byte[] recordingDigest, Collection<String> ruleIds) {
+        MessageDigest digest = newDigest();
+        digest.update(String.join(",", new TreeSet<>(ruleIds)).getBytes(StandardCharsets.UTF_8));
+        return Hex.encodeHexString(recordingDigest) + "-" + Hex.encodeHexString(digest.digest());
+    }
+
+    public Optional<Map<String, AnalysisResult>> get(String key) {
+        Entry entry;
+        long readGeneration;
+        synchronized (this) {
+            entry = entries.get(key);
+            readGeneration = generation;
+        }
+        if (entry == null && directory != null) {
+            Entry read = readEntry(key);
+            if (read != null) {
+                synchronized (this) {
+                    // an entry put while this one was being read is newer
+                    entry = entries.get(key);
+                    if (entry == null) {
+                        entry = read;
+                        if (readGeneration == generation) {
+                            insert(key, entry);
+                        }
+                    }
+                }
+            }
+        }
+        if (entry == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new HashMap<>(entry.results));
+    }
+
+    public void put(String key, Map<String, AnalysisResult> results) {
+        Entry entry = new Entry(new HashMap<>(results));
+        long writeGeneration;
+        synchronized (this) {
+            insert(key, entry);
+            writeGeneration = generation;
+        }
+        if (directory != null) {
+            writeEntry(key, entry, writeGeneration);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        synchronized (this) {
+            entries.clear();
+            currentBytes = 0;
+            generation++;
+        }
+        // entries written from now on may be deleted along with the rest, which costs them only
+        // their disk copy, while entries being written from before are never moved into place
+        if (directory != null && Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files =
+                    Files.newDirectoryStream(directory, "*" + DISK_ENTRY_SUFFIX)) {
+                for (Path p : files) {
+                    Files.deleteIfExists(p);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to clear report cache directory", e);
+            }
+        }
+    }
+
+    private void insert(String key, Entry entry) {
+        Entry prev = entries.put(key, entry);
+        if (prev != null) {
+            currentBytes -= prev.size;
+        }
+        currentBytes += entry.size;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        // always retain the most recent entry, even if it alone exceeds the byte budget
+        while ((entries.size() > maxEntries || currentBytes > maxBytes) && entries.size() > 1) {
+            Entry eldest = it.next().getValue();
+            currentBytes -= eldest.size;
+            it.remove();
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + DISK_ENTRY_SUFFIX);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry readEntry(String key) {
+        Path path = entryPath(key);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (InputStream is = Files.newInputStream(path);
+                ObjectInputStream ois = new ObjectInputStream(is)) {
+            ois.setObjectInputFilter(DISK_ENTRY_FILTER);
+            return new Entry((HashMap<String, AnalysisResult>) ois.readObject());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.warn("Discarding unreadable report cache entry {}", path, e);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ioe) {
+                logger.warn("Failed to delete report cache entry {}", path, ioe);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Write the entry to a temporary file, then move it into place unless the cache has been
+     * cleared since the entry was inserted. Only the move is done under the cache's lock.
+     */
+    private void writeEntry(String key, Entry entry, long writeGeneration) {
+        Path path = entryPath(key);
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp);
+                    ObjectOutputStream oos = new ObjectOutputStream(os)) {
+                oos.writeObject(entry.results);
+            }
+            synchronized (this) {
+                if (writeGeneration == generation) {
+                    Files.move(
+                            tmp,
+                            path,
+                            StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    tmp = null;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write report cache entry {}", path, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete report cache entry {}", tmp, e);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        final HashMap<String, AnalysisResult> results;
+        final long size;
+
+        Entry(HashMap<String, AnalysisResult> results) {
+            this.results = results;
+            // reading the evaluations also renders any lazy ones, so that cached reports do not
+            // retain the recordings they were generated from
+            this.size = estimateSize(results);
+        }
+
+        private static long estimateSize(Map<String, AnalysisResult> results) {
+            long size = 0;
+            for (Map.Entry<String, AnalysisResult> e : results.entrySet()) {
+                AnalysisResult result = e.getValue();
+                size +=
+                        64
+                                + sizeOf(e.getKey())
+                                + sizeOf(result.getName())
+                                + sizeOf(result.getTopic());
+                Evaluation evaluation = result.getEvaluation();
+                if (evaluation != null) {
+                    size +=
+                            sizeOf(evaluation.getSummary())
+                                    + sizeOf(evaluation.getExplanation())
+                                    + sizeOf(evaluation.getSolution());
+                    for (Evaluation.Suggestion s : evaluation.getSuggestions()) {
+                        size +=
+                                32
+                                        + sizeOf(s.getName())
+                                        + sizeOf(s.getSetting())
+                                        + sizeOf(s.getValue());
+                    }
+                }
+            }
+            return size;
+        }
+
+        private static long sizeOf(String s) {
+            return s == null ? 0 : 40 + 2L * s.length();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.ResultBuilder;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the stages of a single report request. Each stage is submitted to the executor and
+ * recorded here so that cancelling the report's {@link Future} can interrupt whichever stage
+ * happens to be running, whether that is the parse or any of the rule evaluations. Rule evaluations
+ * which exceed their deadline are interrupted in the same way, and complete with a timed out result
+ * in place of the rule's own.
+ */
+final class ReportTask {
+
+    // times out reports and their rule evaluations, handing the timeouts themselves to the qThread.
+    // Timers are removed as soon as they are cancelled, so that a finished report is not retained
+    // until its deadline would have passed.
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = newTimeoutScheduler();
+
+    final CompletableFuture<Map<String, AnalysisResult>> result = new CompletableFuture<>();
+    private final Queue<Stage> stages = new ConcurrentLinkedQueue<>();
+    private final BiConsumer<String, AnalysisResult> onResult;
+    private final Function<Runnable, Future<?>> dispatcher;
+    private final Executor qThread;
+    private final Duration reportTimeout;
+    private final ReportMetricsListener metrics;
+    volatile ReportAdmissionController.Reservation reservation;
+    final long start = System.nanoTime();
+    // expires each rule evaluation still in flight when the report deadline passes
+    private final Queue<Runnable> expiries = new ConcurrentLinkedQueue<>();
+    private final Set<IResult> timedOutResults =
+            Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    volatile boolean evaluating;
+    private volatile boolean expired;
+    // whether the report analyzes only a sample of the recording
+    volatile boolean approximate;
+    // the number of events parsed, if counted before the report's events were filtered
+    volatile long itemCount = -1;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param onResult called with each rule's result as soon as it is available
+     * @param dispatcher hands each stage to the executor, returning a future which cancels or
+     *     interrupts the stage
+     * @param qThread runs the report's timeouts
+     * @param reportTimeout the time the whole report may take, or null for no limit
+     * @param metrics notified of the report's progress
+     */
+    ReportTask(
+            BiConsumer<String, AnalysisResult> onResult,
+            Function<Runnable, Future<?>> dispatcher,
+            Executor qThread,
+            Duration reportTimeout,
+            ReportMetricsListener metrics) {
+        this.onResult = onResult;
+        this.dispatcher = dispatcher;
+        this.qThread = qThread;
+        this.reportTimeout = reportTimeout;
+        this.metrics = metrics;
+        ScheduledFuture<?> deadline =
+                reportTimeout != null
+                        ? TIMEOUTS.schedule(
+                                () -> qThread.execute(this::expire),
+                                reportTimeout.toNanos(),
+                                TimeUnit.NANOSECONDS)
+                        : null;
+        result.whenComplete(
+                (v, t) -> {
+                    if (deadline != null) {
+                        deadline.cancel(false);
+                    }
+                    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                    if (result.isCancelled()) {
+                        cancelStages();
+                        notifyMetrics(m -> m.reportCancelled(elapsed));
+                    } else if (t != null) {
+                        notifyMetrics(m -> m.reportFailed(t, elapsed));
+                    } else {
+                        notifyMetrics(m -> m.reportCompleted(elapsed));
+                    }
+                });
+    }
+
+    <T> CompletableFuture<T> submit(Callable<T> callable) {
+        return submit(callable, null, null);
+    }
+
+    /**
+     * @param timeout the time the stage may run for once it has started, or null for no limit
+     * @param onTimeout supplies the stage's value if it runs out of time, either by exceeding its
+     *     own timeout or by the report's deadline passing. Null if the stage has no deadline.
+     */
+    <T> CompletableFuture<T> submit(Callable<T> callable, Duration timeout, Supplier<T> onTimeout) {
+        CompletableFuture<T> stage = new CompletableFuture<>();
+        if (result.isDone()) {
+            stage.cancel(false);
+            return stage;
+        }
+        if (onTimeout != null && expired) {
+            stage.complete(onTimeout.get());
+            return stage;
+        }
+        CompletableFuture<Future<?>> handle = new CompletableFuture<>();
+        Runnable expire =
+                () -> {
+                    if (!stage.isDone() && stage.complete(onTimeout.get())) {
+                        handle.thenAccept(f -> f.cancel(true));
+                    }
+                };
+        Future<?> f;
+        try {
+            f =
+                    dispatcher.apply(
+                            () -> {
+                                if (timeout != null && onTimeout != null) {
+                                    ScheduledFuture<?> timer =
+                                            TIMEOUTS.schedule(
+                                                    () -> qThread.execute(expire),
+                                                    timeout.toNanos(),
+                                                    TimeUnit.NANOSECONDS);
+                                    stage.whenComplete((v, t) -> timer.cancel(false));
+                                }
+                                try {
+                                    stage.complete(callable.call());
+                                } catch (Exception e) {
+                                    stage.completeExceptionally(e);
+                                } catch (Error e) {
+                                    stage.completeExceptionally(e);
+                                    throw e;
+                                }
+                            });
+        } catch (RuntimeException e) {
+            // ex. the executor rejected the stage
+            stage.completeExceptionally(e);
+            return stage;
+        }
+        handle.complete(f);
+        Stage s = new Stage(f, stage);
+        stages.add(s);
+        stage.whenComplete((v, t) -> stages.remove(s));
+        if (onTimeout != null) {
+            expiries.add(expire);
+            stage.whenComplete((v, t) -> expiries.remove(expire));
+            if (expired) {
+                expire.run();
+            }
+        }
+        // the report may have ended while the stage was being dispatched
+        if (result.isDone()) {
+            cancelStages();
+        }
+        return stage;
+    }
+
+    /**
+     * Called once the report deadline passes. Rule evaluations still pending are timed out so that
+     * the report completes with the results already available, but without a parsed recording there
+     * are no results to return at all.
+     */
+    private void expire() {
+        if (result.isDone()) {
+            return;
+        }
+        expired = true;
+        if (!evaluating) {
+            fail(new TimeoutException("Report was not generated within " + reportTimeout));
+            return;
+        }
+        Runnable r;
+        while ((r = expiries.poll()) != null) {
+            r.run();
+        }
+    }
+
+    /**
+     * @return a result standing in for the rule's own, which is only used if it completes the
+     *     rule's stage before the evaluation does
+     */
+    IResult timedOut(IRule rule) {
+        IResult timedOut =
+                ResultBuilder.createFor(rule, IPreferenceValueProvider.DEFAULT_VALUES)
+                        .setSeverity(Severity.NA)
+                        .setSummary("Evaluation of this rule did not complete in time.")
+                        .build();
+        timedOutResults.add(timedOut);
+        return timedOut;
+    }
+
+    boolean isTimedOut(IResult result) {
+        return timedOutResults.contains(result);
+    }
+
+    /** Feed the actual size of the parsed recording back into its admission reservation. */
+    void measured(long recordingBytes) {
+        ReportAdmissionController.Reservation r = reservation;
+        if (r != null) {
+            r.update(recordingBytes);
+        }
+    }
+
+    /**
+     * Resize the admission reservation to the heap this report added, without taking it as the size
+     * of a whole recording.
+     */
+    void resized(long recordingBytes) {
+        ReportAdmissionController.Reservation r = reservation;
+        if (r != null) {
+            r.resize(recordingBytes);
+        }
+    }
+
+    void publish(String ruleId, AnalysisResult analysisResult) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            onResult.accept(ruleId, analysisResult);
+        } catch (RuntimeException e) {
+            logger.warn("Exception thrown by result listener", e);
+        }
+    }
+
+    void complete(CompletableFuture<Map<String, AnalysisResult>> results) {
+        results.whenComplete(
+                (evalMap, t) -> {
+                    if (t != null) {
+                        fail(t);
+                    } else {
+                        result.complete(evalMap);
+                    }
+                });
+    }
+
+    void fail(Throwable t) {
+        Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+        if (!result.isCancelled()) {
+            logger.warn("Exception thrown", cause);
+        }
+        result.completeExceptionally(cause);
+        cancelStages();
+    }
+
+    void notifyMetrics(Consumer<ReportMetricsListener> event) {
+        try {
+            event.accept(metrics);
+        } catch (RuntimeException e) {
+            logger.warn("Exception thrown by metrics listener", e);
+        }
+    }
+
+    private void cancelStages() {
+        Stage s;
+        while ((s = stages.poll()) != null) {
+            // a stage which never gets to run would otherwise never complete, leaving
+            // anything waiting on it, such as other reports sharing a parse, waiting forever
+            s.result.cancel(false);
+            if (!s.future.isDone()) {
+                s.future.cancel(true);
+            }
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler =
+                new ScheduledThreadPoolExecutor(
+                        1,
+                        r -> {
+                            Thread thread = new Thread(r, "cryostat-report-timeouts");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /** A stage of a report, along with the future which cancels or interrupts its execution. */
+    private static class Stage {
+        final Future<?> future;
+        final CompletableFuture<?> result;
+
+        Stage(Future<?> future, CompletableFuture<?> result) {
+            this.future = future;
+            this.result = result;
+        }
+    }
+}
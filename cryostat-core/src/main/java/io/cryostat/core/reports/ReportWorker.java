@@ -0,0 +1,160 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of a report worker process forked by a {@link ReportWorkerPool}. The worker reads
+ * requests from its standard input and writes each report to its standard output, one at a time,
+ * until its input is closed. Anything else the worker prints goes to its standard error.
+ */
+public final class ReportWorker {
+
+    static final ObjectInputFilter REQUEST_FILTER =
+            ObjectInputFilter.Config.createFilter(
+                    "java.util.ArrayList;java.lang.Object;java.lang.String;"
+                            + Request.class.getName()
+                            + ";!*");
+
+    static final ObjectInputFilter RESPONSE_FILTER =
+            ObjectInputFilter.Config.createFilter(
+                    // HashMap and ArrayList also check their backing array element types
+                    "java.util.HashMap;java.util.Map$Entry;java.util.ArrayList;java.lang.Object;"
+                            + "java.lang.String;"
+                            + Response.class.getName()
+                            + ";"
+                            + AnalysisResult.class.getName()
+                            + "*;!*");
+
+    private ReportWorker() {}
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            serve();
+        } catch (Exception e) {
+            // the pool reports the exit status, while the cause is only on standard error
+            LoggerFactory.getLogger(ReportWorker.class).error("Report worker failed", e);
+            status = 1;
+        }
+        // the generator's scheduling threads would otherwise keep the process alive
+        System.exit(status);
+    }
+
+    private static void serve() throws IOException, ClassNotFoundException, InterruptedException {
+        // standard output carries the protocol, so keep everything else off of it
+        OutputStream protocol = System.out;
+        System.setOut(System.err);
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(protocol));
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(System.in));
+        in.setObjectInputFilter(REQUEST_FILTER);
+        ExecutorService executor = Executors.newWorkStealingPool();
+        // generators are reused for every report with the same rule timeout, which in practice is
+        // every report, since each owns threads which are never released
+        Map<Long, InterruptibleReportGenerator> generators = new HashMap<>();
+        while (true) {
+            Request request;
+            try {
+                request = (Request) in.readObject();
+            } catch (EOFException e) {
+                return;
+            }
+            InterruptibleReportGenerator generator =
+                    generators.computeIfAbsent(
+                            request.ruleTimeoutNanos,
+                            timeout ->
+                                    InterruptibleReportGenerator.Builder.create(executor)
+                                            .ruleTimeout(
+                                                    timeout > 0 ? Duration.ofNanos(timeout) : null)
+                                            .build());
+            out.writeObject(generate(generator, request));
+            out.flush();
+            // the reports already written need not be remembered for back-references
+            out.reset();
+        }
+    }
+
+    private static Response generate(InterruptibleReportGenerator generator, Request request)
+            throws InterruptedException {
+        Set<String> ruleIds = new HashSet<>(request.ruleIds);
+        try {
+            return new Response(
+                    generator
+                            .generateEvalMapInterruptibly(
+                                    Paths.get(request.recording),
+                                    rule -> ruleIds.contains(rule.getId()))
+                            .get(),
+                    null);
+        } catch (ExecutionException e) {
+            return new Response(null, e.getCause());
+        }
+    }
+
+    static class Request implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String recording;
+        final ArrayList<String> ruleIds;
+        final long ruleTimeoutNanos;
+
+        Request(String recording, List<String> ruleIds, Duration ruleTimeout) {
+            this.recording = recording;
+            this.ruleIds = new ArrayList<>(ruleIds);
+            this.ruleTimeoutNanos = ruleTimeout == null ? -1 : ruleTimeout.toNanos();
+        }
+    }
+
+    static class Response implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final HashMap<String, AnalysisResult> results;
+        // the failure itself may not be deserializable by the pool, so only its description is
+        // sent
+        final String failure;
+        final String failureType;
+
+        Response(Map<String, AnalysisResult> results, Throwable failure) {
+            this.results = results == null ? null : new HashMap<>(results);
+            this.failure = failure == null ? null : String.valueOf(failure);
+            this.failureType = failure == null ? null : failure.getClass().getName();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of local worker processes which parse recordings and evaluate rules outside of this JVM,
+ * so that analyzing a very large recording cannot exhaust this JVM's heap or stall it with garbage
+ * collection. Each worker is a separate JVM with its own maximum heap size, running a single report
+ * at a time; reports wait in a queue for the next idle worker. A worker which crashes or runs out
+ * of memory fails only the report it was running, and is replaced for the next one. Workers are
+ * also replaced after a fixed number of reports, so that any state they accumulate is discarded.
+ * Cancelling a report kills the worker running it. Workers are started with this JVM's {@code java}
+ * executable and class path by default, which may have to be configured with a {@link Builder}
+ * where those do not contain this library, ex. when running from a fat or Quarkus fast JAR.
+ *
+ * @see InterruptibleReportGenerator.Builder#workerPool(ReportWorkerPool)
+ */
+public final class ReportWorkerPool implements AutoCloseable {
+
+    public static final int DEFAULT_REPORTS_PER_WORKER = 16;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final List<String> command;
+    private final int reportsPerWorker;
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final Set<Worker> live = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * @param workers the number of worker processes, and so of reports generated at once
+     * @param maxHeapBytes the maximum heap size of each worker process
+     * @throws IOException if a worker process could not be started
+     */
+    public ReportWorkerPool(int workers, long maxHeapBytes) throws IOException {
+        this(workers, maxHeapBytes, DEFAULT_REPORTS_PER_WORKER);
+    }
+
+    /**
+     * @param workers the number of worker processes, and so of reports generated at once
+     * @param maxHeapBytes the maximum heap size of each worker process
+     * @param reportsPerWorker the number of reports after which a worker process is replaced
+     * @throws IOException if a worker process could not be started
+     */
+    public ReportWorkerPool(int workers, long maxHeapBytes, int reportsPerWorker)
+            throws IOException {
+        this(Builder.create(workers, maxHeapBytes).reportsPerWorker(reportsPerWorker));
+    }
+
+    private ReportWorkerPool(Builder builder) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(builder.javaExecutable.toString());
+        command.add("-Xmx" + builder.maxHeapBytes);
+        // fail the report rather than thrash once the worker's heap is exhausted
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.addAll(builder.jvmArgs);
+        command.add("-cp");
+        command.add(builder.classPath);
+        command.add(ReportWorker.class.getName());
+        this.command = List.copyOf(command);
+        this.reportsPerWorker = builder.reportsPerWorker;
+        // start the first worker up front, so that a pool which cannot start workers fails here
+        // rather than failing every report
+        Worker first = new Worker(this.command);
+        live.add(first);
+        for (int i = 0; i < builder.workers; i++) {
+            Worker worker = i == 0 ? first : null;
+            Thread thread = new Thread(() -> serve(worker), "cryostat-report-worker-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        // the other worker processes are only started once there is a report for them
+        threads.forEach(Thread::start);
+    }
+
+    /**
+     * Queue a report on a recording on local disk, which the worker processes must be able to read.
+     *
+     * @param ruleIds the IDs of the rules to evaluate. The others are reported as not applicable.
+     * @param ruleTimeout the time after which a single rule's evaluation is abandoned, or null for
+     *     no limit
+     * @return the report. Cancelling it kills the worker running it, if any.
+     */
+    CompletableFuture<Map<String, AnalysisResult>> submit(
+            Path recording, List<String> ruleIds, Duration ruleTimeout) {
+        Job job =
+                new Job(
+                        new ReportWorker.Request(
+                                recording.toAbsolutePath().toString(), ruleIds, ruleTimeout));
+        if (closed) {
+            job.result.completeExceptionally(new IllegalStateException("Worker pool is closed"));
+            return job.result;
+        }
+        job.result.whenComplete(
+                (v, t) -> {
+                    Worker worker = job.worker;
+                    if (job.result.isCancelled() && worker != null) {
+                        worker.destroy();
+                    }
+                });
+        queue.add(job);
+        return job.result;
+    }
+
+    /** Stop the worker processes, and fail every report which has not completed. */
+    @Override
+    public void close() {
+        closed = true;
+        threads.forEach(Thread::interrupt);
+        // threads blocked reading from a worker are released once its process is gone
+        live.forEach(Worker::destroy);
+        Job job;
+        while ((job = queue.poll()) != null) {
+            job.result.completeExceptionally(new IllegalStateException("Worker pool is closed"));
+        }
+    }
+
+    private void serve(Worker started) {
+        Worker worker = started;
+        try {
+            while (!closed) {
+                Job job = queue.take();
+                if (job.result.isDone()) {
+                    continue;
+                }
+                try {
+                    if (worker == null || worker.reports >= reportsPerWorker) {
+                        if (worker != null) {
+                            live.remove(worker);
+                            worker.close();
+                        }
+                        worker = null;
+                        worker = new Worker(command);
+                        live.add(worker);
+                        if (closed) {
+                            worker.destroy();
+                        }
+                    }
+                    job.worker = worker;
+                    if (job.result.isDone()) {
+                        // the report was cancelled while being assigned the worker, which may
+                        // already have been destroyed on its behalf, so it is not reused
+                        live.remove(worker);
+                        worker.destroy();
+                        worker = null;
+                        continue;
+                    }
+                    ReportWorker.Response response = worker.generate(job.request);
+                    if (response.failure != null) {
+                        job.result.completeExceptionally(
+                                new WorkerFailedException(response.failure, response.failureType));
+                    } else {
+                        job.result.complete(response.results);
+                    }
+                } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    if (!job.result.isDone()) {
+                        String reason = worker == null ? e.toString() : worker.describeExit();
+                        logger.warn("Report worker failed: {}", reason, e);
+                        job.result.completeExceptionally(new WorkerFailedException(reason, null));
+                    }
+                    if (worker != null) {
+                        live.remove(worker);
+                        worker.destroy();
+                    }
+                    worker = null;
+                } finally {
+                    job.worker = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (worker != null) {
+                live.remove(worker);
+                worker.destroy();
+            }
+        }
+    }
+
+    private static class Job {
+        final ReportWorker.Request request;
+        final CompletableFuture<Map<String, AnalysisResult>> result = new CompletableFuture<>();
+        volatile Worker worker;
+
+        Job(ReportWorker.Request request) {
+            this.request = request;
+        }
+    }
+
+    /** A single worker process, along with the streams to communicate with it. */
+    private static final class Worker {
+        final Process process;
+        final ObjectOutputStream out;
+        final ObjectInputStream in;
+        int reports;
+
+        Worker(List<String> command) throws IOException {
+            this.process =
+                    new ProcessBuilder(command)
+                            .redirectInput(Redirect.PIPE)
+                            .redirectOutput(Redirect.PIPE)
+                            .redirectError(Redirect.INHERIT)
+                            .start();
+            try {
+                this.out =
+                        new ObjectOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                this.out.flush();
+                this.in = new ObjectInputStream(new BufferedInputStream(process.getInputStream()));
+                this.in.setObjectInputFilter(ReportWorker.RESPONSE_FILTER);
+            } catch (IOException e) {
+                // the worker exits before writing its stream header if it cannot start at all
+                String reason = describeExit();
+                process.destroyForcibly();
+                throw new IOException("Could not start report worker: " + reason, e);
+            }
+        }
+
+        ReportWorker.Response generate(ReportWorker.Request request)
+                throws IOException, ClassNotFoundException {
+            reports++;
+            out.writeObject(request);
+            out.flush();
+            out.reset();
+            return (ReportWorker.Response) in.readObject();
+        }
+
+        /** Let the worker exit once it has finished its current report, if any. */
+        void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                destroy();
+            }
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+        }
+
+        String describeExit() {
+            try {
+                if (process.waitFor(1, TimeUnit.SECONDS)) {
+                    return "worker process exited with status " + process.exitValue();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "worker process stopped responding";
+        }
+    }
+
+    /** Thrown when a worker process could not generate a report. */
+    @SuppressWarnings("serial")
+    public static class WorkerFailedException extends Exception {
+        private final String failureType;
+
+        WorkerFailedException(String reason, String failureType) {
+            super(reason);
+            this.failureType = failureType;
+        }
+
+        /**
+         * @return the class name of the exception the report failed with in the worker, ex. to tell
+         *     a timeout from an unreadable recording, or null if the worker process itself failed
+         */
+        public String getFailureType() {
+            return failureType;
+        }
+    }
+
+    public static class Builder {
+        private final int workers;
+        private final long maxHeapBytes;
+        private int reportsPerWorker = DEFAULT_REPORTS_PER_WORKER;
+        private Path javaExecutable = Paths.get(System.getProperty("java.home"), "bin", "java");
+        private String classPath = System.getProperty("java.class.path");
+        private List<String> jvmArgs = List.of();
+
+        private Builder(int workers, long maxHeapBytes) {
+            this.workers = workers;
+            this.maxHeapBytes = maxHeapBytes;
+        }
+
+        /**
+         * @param workers the number of worker processes, and so of reports generated at once
+         * @param maxHeapBytes the maximum heap size of each worker process
+         */
+        public static Builder create(int workers, long maxHeapBytes) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("workers must be positive");
+            }
+            if (maxHeapBytes < 1) {
+                throw new IllegalArgumentException("maxHeapBytes must be positive");
+            }
+            return new Builder(workers, maxHeapBytes);
+        }
+
+        /**
+         * @param reportsPerWorker the number of reports after which a worker process is replaced
+         */
+        public Builder reportsPerWorker(int reportsPerWorker) {
+            if (reportsPerWorker < 1) {
+                throw new IllegalArgumentException("reportsPerWorker must be positive");
+            }
+            this.reportsPerWorker = reportsPerWorker;
+            return this;
+        }
+
+        /**
+         * @param javaExecutable the {@code java} executable to start worker processes with.
+         *     Defaults to that of this JVM.
+         */
+        public Builder javaExecutable(Path javaExecutable) {
+            this.javaExecutable = Objects.requireNonNull(javaExecutable);
+            return this;
+        }
+
+        /**
+         * @param classPath the class path of worker processes, which must contain this library and
+         *     its dependencies. Defaults to this JVM's class path.
+         */
+        public Builder classPath(String classPath) {
+            this.classPath = Objects.requireNonNull(classPath);
+            return this;
+        }
+
+        /**
+         * @param jvmArgs further options for the worker processes' JVMs, ex. system properties
+         */
+        public Builder jvmArgs(List<String> jvmArgs) {
+            this.jvmArgs = List.copyOf(jvmArgs);
+            return this;
+        }
+
+        /**
+         * @throws IOException if a worker process could not be started, ex. because the class path
+         *     does not contain this library
+         */
+        public ReportWorkerPool build() throws IOException {
+            return new ReportWorkerPool(this);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openjdk.jmc.flightrecorder.jdk.JdkTypeIDs;
+import org.openjdk.jmc.flightrecorder.parser.IEventSink;
+import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
+import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+import org.openjdk.jmc.flightrecorder.parser.ValueField;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+
+/**
+ * Parser extension which discards events that only unselected rules need, so that they are never
+ * retained in the parsed {@link org.openjdk.jmc.common.item.IItemCollection}. Only event types
+ * which some rule declares as required are candidates for discarding. Any other type is retained,
+ * since rules may read event types beyond those they declare. This should be the last extension in
+ * the list passed to the loader so that it wraps all of the others, and discarded events are not
+ * processed by them either.
+ */
+class RequiredEventsParserExtension implements IParserExtension {
+
+    /**
+     * Low-volume event types describing the recording and the JVM it came from. Rules consult these
+     * through RulesToolkit (ex. to check whether an event type was enabled, or which JVM version
+     * produced the recording) without declaring them as required events, so they are always
+     * retained.
+     */
+    static final Set<String> ALWAYS_REQUIRED =
+            Set.of(
+                    JdkTypeIDs.RECORDINGS,
+                    JdkTypeIDs.RECORDING_SETTING,
+                    JdkTypeIDs.VM_INFO,
+                    JdkTypeIDs.SYSTEM_PROPERTIES,
+                    JdkTypeIDs.OS_INFORMATION,
+                    JdkTypeIDs.CPU_INFORMATION,
+                    JdkTypeIDs.GC_CONF,
+                    JdkTypeIDs.HEAP_CONF,
+                    JdkTypeIDs.GC_CONF_YOUNG_GENERATION,
+                    JdkTypeIDs.GC_CONF_SURVIVOR,
+                    JdkTypeIDs.GC_CONF_TLAB,
+                    JdkTypeIDs.COMPILER_CONFIG,
+                    JdkTypeIDs.BOOLEAN_FLAG,
+                    JdkTypeIDs.DOUBLE_FLAG,
+                    JdkTypeIDs.INT_FLAG,
+                    JdkTypeIDs.LONG_FLAG,
+                    JdkTypeIDs.STRING_FLAG,
+                    JdkTypeIDs.UINT_FLAG,
+                    JdkTypeIDs.ULONG_FLAG);
+
+    /**
+     * Event types which some rules read without declaring them in {@link
+     * IRule#getRequiredEvents()}, keyed by rule ID.
+     */
+    static final Map<String, Set<String>> UNDECLARED_REQUIRED =
+            Map.of("ContextSwitch", Set.of(JdkTypeIDs.MONITOR_ENTER));
+
+    private final Set<String> discardedTypes;
+
+    private RequiredEventsParserExtension(Set<String> discardedTypes) {
+        this.discardedTypes = Collections.unmodifiableSet(discardedTypes);
+    }
+
+    /**
+     * @param allRules every rule known to the report generator
+     * @param selectedRules the rules which will be evaluated, including any rules they depend on
+     */
+    static RequiredEventsParserExtension forRules(
+            Collection<IRule> allRules, Collection<IRule> selectedRules) {
+        Set<String> discarded = new HashSet<>();
+        for (IRule rule : allRules) {
+            discarded.addAll(rule.getRequiredEvents().keySet());
+        }
+        for (IRule rule : selectedRules) {
+            discarded.removeAll(rule.getRequiredEvents().keySet());
+            discarded.removeAll(UNDECLARED_REQUIRED.getOrDefault(rule.getId(), Set.of()));
+        }
+        discarded.removeAll(ALWAYS_REQUIRED);
+        return new RequiredEventsParserExtension(discarded);
+    }
+
+    Set<String> getDiscardedTypes() {
+        return discardedTypes;
+    }
+
+    @Override
+    public IEventSinkFactory getEventSinkFactory(IEventSinkFactory subFactory) {
+        return new IEventSinkFactory() {
+            @Override
+            public IEventSink create(
+                    String identifier,
+                    String label,
+                    String[] category,
+                    String description,
+                    List<ValueField> dataStructure) {
+                if (discardedTypes.contains(identifier)) {
+                    return DiscardingEventSink.INSTANCE;
+                }
+                return subFactory.create(identifier, label, category, description, dataStructure);
+            }
+
+            @Override
+            public void flush() {
+                subFactory.flush();
+            }
+        };
+    }
+
+    private enum DiscardingEventSink implements IEventSink {
+        INSTANCE;
+
+        @Override
+        public void addEvent(Object[] values) {}
+    }
+}
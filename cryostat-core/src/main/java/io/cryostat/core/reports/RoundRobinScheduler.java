@@ -0,0 +1,116 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Shares an executor between several lanes of work, ex. the reports of a batch, so that no lane can
+ * monopolize it. At most a fixed number of tasks are handed to the executor at once, and whenever
+ * one finishes the next task is taken from the next lane in turn which has any waiting. A lane
+ * which submits many tasks at once, such as a report scheduling all of its rule evaluations, thus
+ * only delays the others by one task each.
+ */
+final class RoundRobinScheduler {
+
+    private final Executor executor;
+    private final int maxRunning;
+    private final Object lock = new Object();
+    // lanes are visited in insertion order, and a lane is moved to the back once it is visited
+    private final Map<Object, Queue<FutureTask<?>>> lanes = new LinkedHashMap<>();
+    private int running;
+
+    /**
+     * @param maxRunning the maximum number of tasks to hand to the executor at once
+     */
+    RoundRobinScheduler(Executor executor, int maxRunning) {
+        if (maxRunning < 1) {
+            throw new IllegalArgumentException("maxRunning must be positive");
+        }
+        this.executor = executor;
+        this.maxRunning = maxRunning;
+    }
+
+    /**
+     * Queue a task in the given lane. Cancelling the returned future before the task is dispatched
+     * prevents it from running at all.
+     */
+    Future<?> submit(Object lane, Runnable runnable) {
+        FutureTask<?> task = new FutureTask<>(runnable, null);
+        synchronized (lock) {
+            lanes.computeIfAbsent(lane, k -> new ArrayDeque<>()).add(task);
+        }
+        dispatch();
+        return task;
+    }
+
+    int getRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            FutureTask<?> next;
+            synchronized (lock) {
+                if (running >= maxRunning || lanes.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<Object, Queue<FutureTask<?>>>> it = lanes.entrySet().iterator();
+                Map.Entry<Object, Queue<FutureTask<?>>> head = it.next();
+                it.remove();
+                next = head.getValue().poll();
+                if (!head.getValue().isEmpty()) {
+                    lanes.put(head.getKey(), head.getValue());
+                }
+                running++;
+            }
+            try {
+                executor.execute(
+                        () -> {
+                            try {
+                                // a no-op if the task was cancelled while it was waiting
+                                next.run();
+                            } finally {
+                                // a task cancelled while running may leave its thread interrupted,
+                                // which must not leak into whichever task runs on it next
+                                Thread.interrupted();
+                                finished();
+                            }
+                        });
+            } catch (RuntimeException e) {
+                finished();
+                next.cancel(false);
+                throw e;
+            }
+        }
+    }
+
+    private void finished() {
+        synchronized (lock) {
+            running--;
+        }
+        dispatch();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The historical cost of evaluating each rule, used to start the most expensive rules of a report
+ * first so that they do not start last and hold up its completion. Costs are measured in
+ * nanoseconds per event in the recording, so that they carry over between recordings of different
+ * sizes, and are smoothed over recent evaluations. If a file is configured then the profile is
+ * loaded from it and written back to it after each report, so that it survives restarts.
+ */
+public final class RuleCostProfile {
+
+    /** The weight of each new measurement against the rule's previous cost. */
+    static final double SMOOTHING = 0.25;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Path file;
+    private final Map<String, Double> nanosPerItem = new HashMap<>();
+    private final Object saveLock = new Object();
+    private boolean dirty;
+
+    public RuleCostProfile() {
+        this(null);
+    }
+
+    /**
+     * @param file a file to persist the profile into, or null to keep the profile in memory only.
+     *     An existing file which cannot be read is ignored and later overwritten.
+     */
+    public RuleCostProfile(Path file) {
+        this.file = file;
+        if (file != null && Files.isRegularFile(file)) {
+            load(file);
+        }
+    }
+
+    /**
+     * @return the expected time to evaluate the rule on a recording of the given number of events,
+     *     in nanoseconds, or empty if the rule has not been measured
+     */
+    public synchronized OptionalDouble estimate(String ruleId, long items) {
+        Double cost = nanosPerItem.get(ruleId);
+        if (cost == null) {
+            return OptionalDouble.empty();
+        }
+        return OptionalDouble.of(cost * Math.max(1, items));
+    }
+
+    /** Record the time a rule took to evaluate on a recording of the given number of events. */
+    public synchronized void record(String ruleId, Duration elapsed, long items) {
+        double sample = (double) elapsed.toNanos() / Math.max(1, items);
+        nanosPerItem.merge(ruleId, sample, (prev, next) -> prev + SMOOTHING * (next - prev));
+        dirty = true;
+    }
+
+    /** Write the profile to its file, if it has one and has changed since it was last written. */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        // writers take turns so that an older snapshot never replaces a newer one, but the file is
+        // written outside of the profile's own lock so as not to hold up rule evaluations
+        synchronized (saveLock) {
+            Properties properties = new Properties();
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                nanosPerItem.forEach(
+                        (id, cost) -> properties.setProperty(id, Double.toString(cost)));
+                dirty = false;
+            }
+            Path tmp = null;
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent == null) {
+                    throw new IOException("Not a file: " + file);
+                }
+                Files.createDirectories(parent);
+                tmp = Files.createTempFile(parent, "rule-costs", ".tmp");
+                try (OutputStream os = Files.newOutputStream(tmp)) {
+                    properties.store(os, null);
+                }
+                Files.move(
+                        tmp,
+                        file,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                tmp = null;
+            } catch (IOException e) {
+                logger.warn("Failed to write rule cost profile {}", file, e);
+                synchronized (this) {
+                    dirty = true;
+                }
+            } finally {
+                if (tmp != null) {
+                    try {
+                        Files.deleteIfExists(tmp);
+                    } catch (IOException e) {
+                        logger.warn("Failed to delete {}", tmp, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void load(Path file) {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Discarding unreadable rule cost profile {}", file, e);
+            return;
+        }
+        for (String id : properties.stringPropertyNames()) {
+            try {
+                double cost = Double.parseDouble(properties.getProperty(id));
+                if (cost >= 0 && Double.isFinite(cost)) {
+                    nanosPerItem.put(id, cost);
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Discarding unreadable cost of rule {} in {}", id, file);
+            }
+        }
+    }
+}
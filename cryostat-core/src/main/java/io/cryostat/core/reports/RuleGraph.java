@@ -0,0 +1,189 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.rules.DependsOn;
+import org.openjdk.jmc.flightrecorder.rules.IResult;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.ResultBuilder;
+import org.openjdk.jmc.flightrecorder.rules.ResultProvider;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds a {@link CompletableFuture} DAG of rule evaluations from the rules' {@link DependsOn}
+ * annotations. Every evaluation is submitted to the executor, and a dependent rule is submitted as
+ * soon as its prerequisite completes, so no thread ever blocks waiting on a dependency.
+ */
+final class RuleGraph {
+
+    private final ReportTask task;
+    private final IItemCollection items;
+    private final long itemCount;
+    private final Predicate<IRule> predicate;
+    private final RuleCostProfile ruleCostProfile;
+    private final Duration ruleTimeout;
+    private final Map<String, IRule> rulesById = new HashMap<>();
+    private final Map<IRule, CompletableFuture<IResult>> nodes = new HashMap<>();
+    // the results each rule's evaluation may look up through its ResultProvider: its
+    // dependency, and transitively that dependency's own prerequisites
+    private final Map<IRule, List<CompletableFuture<IResult>>> prerequisites = new HashMap<>();
+    private final Set<IRule> visiting = new HashSet<>();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param rules every rule known to the report generator
+     * @param predicate selects the rules to evaluate. Rules which are not selected complete with a
+     *     not applicable result, as do the rules depending on them.
+     * @param ruleCostProfile records the time each evaluation takes
+     * @param ruleTimeout the time each evaluation may take, or null for no limit
+     */
+    RuleGraph(
+            ReportTask task,
+            Collection<IRule> rules,
+            IItemCollection items,
+            long itemCount,
+            Predicate<IRule> predicate,
+            RuleCostProfile ruleCostProfile,
+            Duration ruleTimeout) {
+        this.task = task;
+        this.items = items;
+        this.itemCount = itemCount;
+        this.predicate = predicate;
+        this.ruleCostProfile = ruleCostProfile;
+        this.ruleTimeout = ruleTimeout;
+        for (IRule rule : rules) {
+            rulesById.putIfAbsent(rule.getId(), rule);
+        }
+    }
+
+    CompletableFuture<IResult> schedule(IRule rule) {
+        CompletableFuture<IResult> node = nodes.get(rule);
+        if (node != null) {
+            return node;
+        }
+        if (!visiting.add(rule)) {
+            logger.warn("Rule {} has a circular dependency, skipping", rule.getId());
+            return CompletableFuture.completedFuture(notApplicable(rule));
+        }
+        List<CompletableFuture<IResult>> required = List.of();
+        if (!predicate.test(rule)
+                || !RulesToolkit.matchesEventAvailabilityMap(items, rule.getRequiredEvents())) {
+            node = CompletableFuture.completedFuture(notApplicable(rule));
+        } else if (!hasDependency(rule)) {
+            node = submit(rule, List.of());
+        } else {
+            IRule depRule = rulesById.get(getRuleDependencyName(rule));
+            if (depRule == null) {
+                node = CompletableFuture.completedFuture(notApplicable(rule));
+            } else {
+                CompletableFuture<IResult> depNode = schedule(depRule);
+                required = new ArrayList<>(prerequisites.getOrDefault(depRule, List.of()));
+                required.add(depNode);
+                List<CompletableFuture<IResult>> fRequired = required;
+                node =
+                        depNode.thenCompose(
+                                depResult -> {
+                                    if (!shouldEvaluate(rule, depResult)) {
+                                        return CompletableFuture.completedFuture(
+                                                notApplicable(rule));
+                                    }
+                                    return submit(rule, fRequired);
+                                });
+            }
+        }
+        visiting.remove(rule);
+        prerequisites.put(rule, required);
+        nodes.put(rule, node);
+        return node;
+    }
+
+    private CompletableFuture<IResult> submit(
+            IRule rule, List<CompletableFuture<IResult>> required) {
+        return task.submit(
+                () -> {
+                    long start = System.nanoTime();
+                    IResult result = evaluateRule(rule, items, required);
+                    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                    ruleCostProfile.record(rule.getId(), elapsed, itemCount);
+                    task.notifyMetrics(m -> m.ruleEvaluated(rule.getId(), elapsed));
+                    return result;
+                },
+                ruleTimeout,
+                () -> task.timedOut(rule));
+    }
+
+    private static IResult evaluateRule(
+            IRule rule, IItemCollection items, List<CompletableFuture<IResult>> prerequisites)
+            throws InterruptedException, ExecutionException {
+        ResultProvider resultProvider = new ResultProvider();
+        for (CompletableFuture<IResult> prerequisite : prerequisites) {
+            // prerequisites are always complete by the time a dependent is evaluated
+            resultProvider.addResults(prerequisite.get());
+        }
+        RunnableFuture<IResult> evaluation =
+                rule.createEvaluation(
+                        items, IPreferenceValueProvider.DEFAULT_VALUES, resultProvider);
+        evaluation.run();
+        return evaluation.get();
+    }
+
+    private static IResult notApplicable(IRule rule) {
+        return ResultBuilder.createFor(rule, IPreferenceValueProvider.DEFAULT_VALUES)
+                .setSeverity(Severity.NA)
+                .build();
+    }
+
+    static String getRuleDependencyName(IRule rule) {
+        DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
+        Class<? extends IRule> dependencyType = dependency.value();
+        return dependencyType.getSimpleName();
+    }
+
+    static boolean hasDependency(IRule rule) {
+        DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
+        return dependency != null;
+    }
+
+    /** Brought over from org.openjdk.jmc.flightrecorder.rules.jdk.util.RulesToolkit */
+    private static boolean shouldEvaluate(IRule rule, IResult depResult) {
+        DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
+        if (dependency != null) {
+            if (depResult.getSeverity().compareTo(dependency.severity()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
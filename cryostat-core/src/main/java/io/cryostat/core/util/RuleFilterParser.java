@@ -18,8 +18,17 @@ package io.cryostat.core.util;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -37,63 +46,174 @@ public class RuleFilterParser {
 
     public static final String ALL_WILDCARD_TOKEN = "*";
     public static final String NEGATION_PREFIX_TOKEN = "!";
+    public static final int DEFAULT_CACHE_SIZE = 256;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private final Set<String> ruleIds;
-    private final Set<String> ruleTopics;
+    private final RuleTable table;
 
     RuleFilterParser(Set<String> rules, Set<String> topics) {
-        this.ruleIds = rules;
-        this.ruleTopics = topics;
+        this(new RuleTable(rules, topics, List.of()));
     }
 
     public RuleFilterParser() {
-        this.ruleIds =
-                RuleRegistry.getRules().stream()
-                        .map(rule -> rule.getId())
-                        .collect(Collectors.toSet());
-        this.ruleTopics =
-                RuleRegistry.getRules().stream()
-                        .map(rule -> rule.getTopic())
-                        .collect(Collectors.toSet());
+        this(RuleTable.registry());
     }
 
+    private RuleFilterParser(RuleTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Parse a comma-separated filter of rule IDs and topics, matched case-insensitively. A rule is
+     * accepted if it matches the wildcard or any plain key, and does not match any key prefixed
+     * with the negation token. Filters are compiled once and cached, so parsing the same filter
+     * repeatedly is cheap, and the returned predicate tests each rule in constant time. The cache
+     * is shared by every parser over the rule registry, so parsers need not be reused to benefit.
+     */
     public Predicate<IRule> parse(String rawFilter) {
         if (StringUtils.isBlank(rawFilter)) {
             return (r) -> true;
         }
+        return table.filters.computeIfAbsent(rawFilter, this::compile);
+    }
+
+    private CompiledFilter compile(String rawFilter) {
         SortedSet<String> keys = new TreeSet<>(new FilterComparator());
         keys.addAll(
                 Arrays.asList(rawFilter.split(",")).stream()
                         .map(String::strip)
                         .collect(Collectors.toSet()));
-        Predicate<IRule> combinedPredicate = (r) -> false;
+        Terms accepted = new Terms();
+        Terms rejected = new Terms();
         for (String key : keys) {
             boolean negated = key.startsWith(NEGATION_PREFIX_TOKEN);
             if (negated) {
                 key = key.substring(1);
             }
-            final String fKey = key;
-            Predicate<IRule> predicate;
-            if (ALL_WILDCARD_TOKEN.equals(fKey)) {
-                predicate = (rule) -> true;
-            } else if (ruleIds.stream().anyMatch(key::equalsIgnoreCase)) {
-                predicate = (rule) -> rule.getId().equalsIgnoreCase(fKey);
-            } else if (ruleTopics.stream().anyMatch(key::equalsIgnoreCase)) {
-                predicate = (rule) -> rule.getTopic().equalsIgnoreCase(fKey);
+            Terms terms = negated ? rejected : accepted;
+            String normalized = normalize(key);
+            if (ALL_WILDCARD_TOKEN.equals(key)) {
+                terms.all = true;
+            } else if (table.ids.contains(normalized)) {
+                terms.ids.add(normalized);
+            } else if (table.topics.contains(normalized)) {
+                terms.topics.add(normalized);
             } else {
                 logger.warn(
                         "Filter \"{}\" did not match any known rule IDs or topics, ignoring.", key);
-                continue;
             }
-            if (negated) {
-                combinedPredicate = combinedPredicate.and(predicate.negate());
-            } else {
-                combinedPredicate = combinedPredicate.or(predicate);
+        }
+        return new CompiledFilter(table, accepted, rejected);
+    }
+
+    private static String normalize(String s) {
+        return s == null ? null : s.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Rule IDs and topics known to a parser, along with a stable index over the known rules
+     * themselves and the filters compiled against them. The registry's table is built once and
+     * shared by every parser using it.
+     */
+    private static class RuleTable {
+        final Set<String> ids;
+        final Set<String> topics;
+        final Map<String, Integer> indexById = new HashMap<>();
+        final List<String> indexedTopics = new ArrayList<>();
+        final Map<String, CompiledFilter> filters =
+                Collections.synchronizedMap(
+                        new LinkedHashMap<>(16, 0.75f, true) {
+                            @Override
+                            protected boolean removeEldestEntry(
+                                    Map.Entry<String, CompiledFilter> eldest) {
+                                return size() > DEFAULT_CACHE_SIZE;
+                            }
+                        });
+
+        RuleTable(Set<String> ids, Set<String> topics, Collection<IRule> rules) {
+            this.ids = ids.stream().map(RuleFilterParser::normalize).collect(Collectors.toSet());
+            this.topics =
+                    topics.stream().map(RuleFilterParser::normalize).collect(Collectors.toSet());
+            for (IRule rule : rules) {
+                if (indexById.putIfAbsent(rule.getId(), indexedTopics.size()) == null) {
+                    indexedTopics.add(rule.getTopic());
+                }
+            }
+        }
+
+        static RuleTable registry() {
+            return RegistryHolder.TABLE;
+        }
+
+        /**
+         * @return the index of the rule, or -1 if it is not a known rule
+         */
+        int indexOf(IRule rule) {
+            Integer index = indexById.get(rule.getId());
+            if (index == null || !Objects.equals(indexedTopics.get(index), rule.getTopic())) {
+                return -1;
             }
+            return index;
+        }
+
+        private static class RegistryHolder {
+            static final RuleTable TABLE;
+
+            static {
+                Collection<IRule> rules = RuleRegistry.getRules();
+                TABLE =
+                        new RuleTable(
+                                rules.stream().map(IRule::getId).collect(Collectors.toSet()),
+                                rules.stream().map(IRule::getTopic).collect(Collectors.toSet()),
+                                rules);
+            }
+        }
+    }
+
+    private static class Terms {
+        boolean all;
+        final Set<String> ids = new HashSet<>();
+        final Set<String> topics = new HashSet<>();
+
+        boolean matches(String id, String topic) {
+            return all || ids.contains(normalize(id)) || topics.contains(normalize(topic));
+        }
+    }
+
+    /**
+     * A parsed filter. The verdict for every rule in the parser's table is precomputed into a
+     * bitset, so testing a known rule is a single lookup. Rules outside the table, such as custom
+     * rules not in the registry, are matched against the filter's terms directly.
+     */
+    private static class CompiledFilter implements Predicate<IRule> {
+        private final RuleTable table;
+        private final Terms accepted;
+        private final Terms rejected;
+        private final BitSet verdicts = new BitSet();
+
+        CompiledFilter(RuleTable table, Terms accepted, Terms rejected) {
+            this.table = table;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            for (Map.Entry<String, Integer> e : table.indexById.entrySet()) {
+                int index = e.getValue();
+                verdicts.set(index, matches(e.getKey(), table.indexedTopics.get(index)));
+            }
+        }
+
+        @Override
+        public boolean test(IRule rule) {
+            int index = table.indexOf(rule);
+            if (index >= 0) {
+                return verdicts.get(index);
+            }
+            return matches(rule.getId(), rule.getTopic());
+        }
+
+        private boolean matches(String id, String topic) {
+            return accepted.matches(id, topic) && !rejected.matches(id, topic);
         }
-        return combinedPredicate;
     }
 
     static class FilterComparator implements Comparator<String>, Serializable {
@@ -0,0 +1,105 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.net;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmc.flightrecorder.configuration.IRecordingDescriptor;
+
+import io.cryostat.libcryostat.net.MBeanMetrics;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncJFRConnectionTest {
+
+    AsyncJFRConnection async;
+    Queue<Runnable> tasks = new ArrayDeque<>();
+    @Mock JFRConnection connection;
+    @Mock CryostatFlightRecorderService service;
+    @Mock IRecordingDescriptor descriptor;
+    @Mock MBeanMetrics metrics;
+
+    @BeforeEach
+    void setup() {
+        async = new AsyncJFRConnection(connection, tasks::add);
+    }
+
+    @Test
+    void shouldCompleteOnExecutor() throws Exception {
+        when(connection.getMBeanMetrics()).thenReturn(metrics);
+
+        CompletableFuture<MBeanMetrics> future = async.getMBeanMetrics();
+        MatcherAssert.assertThat(future.isDone(), Matchers.is(false));
+        tasks.remove().run();
+
+        MatcherAssert.assertThat(future.get(), Matchers.sameInstance(metrics));
+    }
+
+    @Test
+    void shouldFailWithOperationException() throws Exception {
+        IOException failure = new IOException("unreachable");
+        when(connection.getJvmIdentifier()).thenThrow(failure);
+
+        CompletableFuture<?> future = async.getJvmIdentifier();
+        tasks.remove().run();
+
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class, future::get);
+        MatcherAssert.assertThat(ee.getCause(), Matchers.sameInstance(failure));
+    }
+
+    @Test
+    void shouldNotStartCancelledOperation() throws Exception {
+        CompletableFuture<Void> future = async.connect();
+        future.cancel(false);
+        tasks.remove().run();
+
+        verify(connection, never()).connect();
+    }
+
+    @Test
+    void shouldRunRecordingLifecycleOnDefaultExecutor() throws Exception {
+        async = new AsyncJFRConnection(connection);
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+        when(connection.getService()).thenReturn(service);
+        when(service.openStream(descriptor, false)).thenReturn(stream);
+
+        async.stop(descriptor).get(5, TimeUnit.SECONDS);
+        MatcherAssert.assertThat(
+                async.openStream(descriptor, false).get(5, TimeUnit.SECONDS),
+                Matchers.sameInstance(stream));
+
+        verify(service).stop(descriptor);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.net;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.remote.JMXServiceURL;
+
+import io.cryostat.libcryostat.net.Credentials;
+import io.cryostat.libcryostat.sys.Clock;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class JFRConnectionPoolTest {
+
+    static final JMXServiceURL URL_A = url("a");
+    static final JMXServiceURL URL_B = url("b");
+
+    JFRConnectionPool pool;
+    List<JFRConnection> connections = new ArrayList<>();
+    @Mock JFRConnectionToolkit toolkit;
+    @Mock Clock clock;
+
+    @BeforeEach
+    void setup() throws Exception {
+        pool = new JFRConnectionPool(toolkit, 1, Duration.ofSeconds(10), clock);
+        lenient()
+                .when(toolkit.connect(any(), any()))
+                .thenAnswer(
+                        inv -> {
+                            JFRConnection connection = mock(JFRConnection.class);
+                            lenient().when(connection.isConnected()).thenReturn(true);
+                            connections.add(connection);
+                            return connection;
+                        });
+    }
+
+    @AfterEach
+    void teardown() {
+        pool.close();
+    }
+
+    @Test
+    void shouldShareConnectionBetweenLeases() throws Exception {
+        JFRConnection first = pool.acquire(URL_A);
+        JFRConnection second = pool.acquire(URL_A);
+        first.close();
+        second.getHost();
+        second.close();
+        JFRConnection third = pool.acquire(URL_A);
+        third.getPort();
+
+        verify(toolkit).connect(URL_A, null);
+        MatcherAssert.assertThat(pool.getMisses(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(pool.getHits(), Matchers.equalTo(2L));
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldKeepCredentialsApart() throws Exception {
+        pool.acquire(URL_A, new Credentials("user", "a"));
+        pool.acquire(URL_A, new Credentials("user", "b"));
+
+        MatcherAssert.assertThat(pool.getMisses(), Matchers.equalTo(2L));
+        MatcherAssert.assertThat(
+                JFRConnectionPool.key(URL_A, new Credentials("user", "secret")),
+                Matchers.not(Matchers.containsString("secret")));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedIdleConnection() throws Exception {
+        JFRConnection a = pool.acquire(URL_A);
+        JFRConnection b = pool.acquire(URL_B);
+        // over capacity, but both connections are still leased
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(2));
+
+        a.close();
+
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(pool.getEvictions(), Matchers.equalTo(1L));
+        verify(connections.get(0)).disconnect();
+        b.close();
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldCloseIdleConnectionsAfterTimeout() throws Exception {
+        pool.acquire(URL_A).close();
+        JFRConnection connection = connections.get(0);
+
+        when(clock.getMonotonicTime()).thenReturn(Duration.ofSeconds(5).toNanos());
+        pool.evictIdle();
+        verify(connection, never()).disconnect();
+
+        when(clock.getMonotonicTime()).thenReturn(Duration.ofSeconds(10).toNanos());
+        pool.evictIdle();
+        verify(connection).disconnect();
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldCloseIdleConnectionsInBackground() throws Exception {
+        pool.close();
+        pool = new JFRConnectionPool(toolkit, 1, Duration.ofMillis(200));
+
+        pool.acquire(URL_A).close();
+
+        verify(connections.get(0), timeout(5_000)).disconnect();
+        MatcherAssert.assertThat(pool.size(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldReplaceDroppedIdleConnection() throws Exception {
+        JFRConnection lease = pool.acquire(URL_A);
+        JFRConnection dropped = connections.get(0);
+        lease.close();
+        when(dropped.isConnected()).thenReturn(false);
+
+        pool.acquire(URL_A);
+
+        verify(dropped).disconnect();
+        MatcherAssert.assertThat(pool.getMisses(), Matchers.equalTo(2L));
+        MatcherAssert.assertThat(pool.getEvictions(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void shouldCloseLeasedConnectionsOnRelease() throws Exception {
+        JFRConnection lease = pool.acquire(URL_A);
+        JFRConnection connection = connections.get(0);
+
+        pool.close();
+        verify(connection, never()).disconnect();
+        lease.close();
+        lease.close();
+
+        verify(connection).disconnect();
+    }
+
+    @Test
+    void shouldRejectUseOfReleasedLease() throws Exception {
+        JFRConnection lease = pool.acquire(URL_A);
+        JFRConnection connection = connections.get(0);
+        lease.close();
+
+        Assertions.assertThrows(IllegalStateException.class, lease::connect);
+        Assertions.assertThrows(IllegalStateException.class, lease::getService);
+        Assertions.assertThrows(IllegalStateException.class, lease::getHost);
+        MatcherAssert.assertThat(lease.isConnected(), Matchers.is(false));
+        verify(connection, never()).connect();
+        verify(connection, never()).getService();
+        verify(connection, never()).getHost();
+    }
+
+    private static JMXServiceURL url(String host) {
+        try {
+            return new JMXServiceURL("rmi", "", 0, "/jndi/rmi://" + host + ":9091/jmxrmi");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.net;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServerConnection;
+
+import org.openjdk.jmc.rjmx.common.ConnectionToolkit;
+import org.openjdk.jmc.rjmx.common.IConnectionDescriptor;
+import org.openjdk.jmc.rjmx.common.internal.RJMXConnection;
+import org.openjdk.jmc.rjmx.common.subscription.MRI;
+import org.openjdk.jmc.rjmx.common.subscription.MRI.Type;
+
+import io.cryostat.libcryostat.JvmIdentifier;
+import io.cryostat.libcryostat.net.RuntimeMetrics;
+import io.cryostat.libcryostat.sys.Clock;
+import io.cryostat.libcryostat.sys.Environment;
+import io.cryostat.libcryostat.sys.FileSystem;
+import io.cryostat.libcryostat.tui.ClientWriter;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class JFRJMXConnectionTest {
+
+    JFRJMXConnection connection;
+    @Mock ClientWriter cw;
+    @Mock FileSystem fs;
+    @Mock Environment env;
+    @Mock IConnectionDescriptor cd;
+    @Mock RJMXConnection rjmx;
+    @Mock MBeanServerConnection server;
+
+    @BeforeEach
+    void setup() throws Exception {
+        connection =
+                new JFRJMXConnection(cw, fs, env, cd) {
+                    @Override
+                    protected synchronized RJMXConnection attemptConnect(IConnectionDescriptor cd) {
+                        return rjmx;
+                    }
+                };
+        lenient().when(rjmx.isConnected()).thenReturn(true);
+        lenient().when(rjmx.getMBeanServer()).thenReturn(server);
+        connection.connect();
+        lenient()
+                .when(rjmx.getMBeanInfo(ConnectionToolkit.RUNTIME_BEAN_NAME))
+                .thenReturn(
+                        new MBeanInfo(
+                                "Runtime",
+                                null,
+                                new MBeanAttributeInfo[] {
+                                    attribute("Name", "java.lang.String"),
+                                    attribute("VmVendor", "java.lang.String"),
+                                    attribute("StartTime", "long"),
+                                    attribute("Uptime", "long"),
+                                },
+                                null,
+                                null,
+                                null));
+    }
+
+    @Test
+    void shouldReadAttributesInOneRequest() throws Exception {
+        when(server.getAttributes(
+                        ConnectionToolkit.RUNTIME_BEAN_NAME,
+                        new String[] {"Name", "VmVendor", "StartTime"}))
+                .thenReturn(
+                        new AttributeList(
+                                List.of(
+                                        new Attribute("Name", "1234@localhost"),
+                                        new Attribute("VmVendor", "vendor"),
+                                        new Attribute("StartTime", 5L))));
+
+        JvmIdentifier id = connection.getJvmIdentifier();
+
+        MatcherAssert.assertThat(id, Matchers.equalTo(expected("vendor")));
+        verify(rjmx, never()).getAttributeValue(any());
+    }
+
+    @Test
+    void shouldReadFailedAttributesSeparately() throws Exception {
+        when(server.getAttributes(
+                        ConnectionToolkit.RUNTIME_BEAN_NAME,
+                        new String[] {"Name", "VmVendor", "StartTime"}))
+                .thenReturn(
+                        new AttributeList(
+                                List.of(
+                                        new Attribute("Name", "1234@localhost"),
+                                        new Attribute("StartTime", 5L))));
+        when(rjmx.getAttributeValue(
+                        new MRI(Type.ATTRIBUTE, ConnectionToolkit.RUNTIME_BEAN_NAME, "VmVendor")))
+                .thenReturn("vendor");
+
+        JvmIdentifier id = connection.getJvmIdentifier();
+
+        MatcherAssert.assertThat(id, Matchers.equalTo(expected("vendor")));
+        verify(rjmx, never())
+                .getAttributeValue(
+                        new MRI(Type.ATTRIBUTE, ConnectionToolkit.RUNTIME_BEAN_NAME, "Name"));
+    }
+
+    @Test
+    void shouldNotReadAttributesSeparatelyIfTargetUnreachable() throws Exception {
+        when(server.getAttributes(eq(ConnectionToolkit.RUNTIME_BEAN_NAME), any()))
+                .thenThrow(new IOException("unreachable"));
+
+        Assertions.assertThrows(IOException.class, connection::getJvmIdentifier);
+
+        verify(rjmx, never()).getAttributeValue(any());
+        verify(cw, never()).println(any(String.class));
+    }
+
+    @Test
+    void shouldCacheAttributesUntilReconnected() throws Exception {
+        when(server.getAttributes(eq(ConnectionToolkit.RUNTIME_BEAN_NAME), any()))
+                .thenReturn(
+                        new AttributeList(
+                                List.of(
+                                        new Attribute("Name", "1234@localhost"),
+                                        new Attribute("VmVendor", "vendor"),
+                                        new Attribute("StartTime", 5L))));
+
+        connection.getJvmIdentifier();
+        connection.getJvmIdentifier();
+        verify(rjmx, times(1)).getMBeanInfo(ConnectionToolkit.RUNTIME_BEAN_NAME);
+
+        connection.disconnect();
+        connection.connect();
+        connection.getJvmIdentifier();
+        verify(rjmx, times(2)).getMBeanInfo(ConnectionToolkit.RUNTIME_BEAN_NAME);
+    }
+
+    @Test
+    void shouldNotBlockOtherCallsDuringRemoteCall() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(server.getAttributes(eq(ConnectionToolkit.RUNTIME_BEAN_NAME), any()))
+                .thenAnswer(
+                        inv -> {
+                            reading.countDown();
+                            release.await();
+                            return new AttributeList(
+                                    List.of(
+                                            new Attribute("Name", "1234@localhost"),
+                                            new Attribute("VmVendor", "vendor"),
+                                            new Attribute("StartTime", 5L)));
+                        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<JvmIdentifier> id = executor.submit(() -> connection.getJvmIdentifier());
+            reading.await();
+
+            Assertions.assertTimeoutPreemptively(
+                    Duration.ofSeconds(5),
+                    () -> {
+                        MatcherAssert.assertThat(connection.isConnected(), Matchers.is(true));
+                        connection.getHandle();
+                    });
+
+            release.countDown();
+            MatcherAssert.assertThat(id.get(), Matchers.equalTo(expected("vendor")));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldUseLocalTimeWithoutConnection() throws Exception {
+        Clock clock = mock(Clock.class);
+        when(clock.getWallTime()).thenReturn(1234L);
+        when(rjmx.getApproximateServerTime(1234L)).thenReturn(1334L);
+
+        MatcherAssert.assertThat(
+                connection.getApproximateServerTime(clock), Matchers.equalTo(1334L));
+        connection.disconnect();
+        MatcherAssert.assertThat(
+                connection.getApproximateServerTime(clock), Matchers.equalTo(1234L));
+    }
+
+    @Test
+    @SuppressWarnings("removal")
+    void shouldExposeConnectionToSubclasses() throws Exception {
+        MatcherAssert.assertThat(connection.rjmxConnection, Matchers.sameInstance(rjmx));
+        MatcherAssert.assertThat(connection.handle, Matchers.sameInstance(connection.getHandle()));
+
+        connection.disconnect();
+
+        MatcherAssert.assertThat(connection.rjmxConnection, Matchers.nullValue());
+        MatcherAssert.assertThat(connection.handle, Matchers.nullValue());
+    }
+
+    private static MBeanAttributeInfo attribute(String name, String type) {
+        return new MBeanAttributeInfo(name, type, null, true, false, false);
+    }
+
+    private static JvmIdentifier expected(String vendor) throws Exception {
+        return JvmIdentifier.from(
+                null,
+                new RuntimeMetrics(
+                        Map.of("Name", "1234@localhost", "VmVendor", vendor, "StartTime", 5L)));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ByteBufferDataInputTest {
+
+    @Test
+    void shouldReadWhatDataOutputWrote() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(-1);
+            out.writeShort(-2);
+            out.writeInt(3);
+            out.writeLong(4L);
+            out.writeDouble(5.5);
+            out.writeUTF("chunk");
+            out.write(new byte[] {6, 7});
+        }
+        ByteBufferDataInput in = new ByteBufferDataInput(ByteBuffer.wrap(bytes.toByteArray()));
+
+        MatcherAssert.assertThat(in.readUnsignedByte(), Matchers.equalTo(0xff));
+        MatcherAssert.assertThat(in.readShort(), Matchers.equalTo((short) -2));
+        MatcherAssert.assertThat(in.readInt(), Matchers.equalTo(3));
+        MatcherAssert.assertThat(in.readLong(), Matchers.equalTo(4L));
+        MatcherAssert.assertThat(in.readDouble(), Matchers.equalTo(5.5));
+        MatcherAssert.assertThat(in.readUTF(), Matchers.equalTo("chunk"));
+        byte[] rest = new byte[2];
+        in.readFully(rest);
+        MatcherAssert.assertThat(rest, Matchers.equalTo(new byte[] {6, 7}));
+    }
+
+    @Test
+    void shouldReadLines() throws Exception {
+        ByteBufferDataInput in =
+                new ByteBufferDataInput(
+                        ByteBuffer.wrap(
+                                "first\nsecond\r\nthird\r\r\nlast\u00e9"
+                                        .getBytes(StandardCharsets.ISO_8859_1)));
+
+        MatcherAssert.assertThat(in.readLine(), Matchers.equalTo("first"));
+        MatcherAssert.assertThat(in.readLine(), Matchers.equalTo("second"));
+        MatcherAssert.assertThat(in.readLine(), Matchers.equalTo("third"));
+        MatcherAssert.assertThat(in.readLine(), Matchers.equalTo(""));
+        MatcherAssert.assertThat(in.readLine(), Matchers.equalTo("last\u00e9"));
+        MatcherAssert.assertThat(in.readLine(), Matchers.nullValue());
+    }
+
+    @Test
+    void shouldNotReadPastLimit() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6}).limit(3);
+        ByteBufferDataInput in = new ByteBufferDataInput(buffer);
+
+        Assertions.assertThrows(EOFException.class, in::readInt);
+        Assertions.assertThrows(EOFException.class, () -> in.readFully(new byte[4]));
+        MatcherAssert.assertThat(in.skipBytes(5), Matchers.equalTo(3));
+        Assertions.assertThrows(EOFException.class, in::readByte);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The loader relies on internals of JMC which are not part of its API, so these tests compare it
+ * against {@link JfrLoaderToolkit} to fail the build, rather than reports, when a JMC upgrade
+ * changes them.
+ */
+class ChunkedRecordingLoaderTest {
+
+    @Test
+    void shouldLoadSameEventsAsJfrLoaderToolkit() throws Exception {
+        Path file = getJfrFile();
+        List<JfrChunk> chunks = JfrChunk.readChunks(file).orElseThrow();
+
+        ChunkedRecordingLoader loader = new ChunkedRecordingLoader(file, chunks, List.of());
+        for (JfrChunk chunk : chunks) {
+            loader.load(chunk);
+        }
+
+        MatcherAssert.assertThat(
+                count(loader.build()),
+                Matchers.equalTo(count(JfrLoaderToolkit.loadEvents(file.toFile()))));
+    }
+
+    @Test
+    void shouldBuildCollectionFromSeparateChunk() throws Exception {
+        Path file = getJfrFile();
+        JfrChunk chunk = JfrChunk.readChunks(file).orElseThrow().get(1);
+        byte[] bytes = Files.readAllBytes(file);
+
+        IItemCollection items =
+                ChunkedRecordingLoader.build(
+                        ChunkedRecordingLoader.loadChunk(file, chunk, List.of()));
+
+        MatcherAssert.assertThat(
+                count(items),
+                Matchers.equalTo(
+                        count(
+                                JfrLoaderToolkit.loadEvents(
+                                        new ByteArrayInputStream(
+                                                bytes,
+                                                (int) chunk.getPosition(),
+                                                (int) chunk.getSize())))));
+    }
+
+    private static long count(IItemCollection items) {
+        return items.getAggregate(Aggregators.count()).longValue();
+    }
+
+    private Path getJfrFile() throws Exception {
+        return Paths.get(getClass().getResource("/profiling_sample.jfr").toURI());
+    }
+}
@@ -17,14 +17,39 @@ package io.cryostat.core.reports;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
+import org.openjdk.jmc.flightrecorder.rules.DependsOn;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
 import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
 
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 
@@ -34,7 +59,9 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -112,6 +139,861 @@ class InterruptibleReportGeneratorTest {
         }
     }
 
+    @Test
+    void shouldPublishEachResultBeforeCompleting() throws Exception {
+        Map<String, AnalysisResult> published = new ConcurrentHashMap<>();
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            Future<Map<String, AnalysisResult>> scoreMap =
+                    generator.generateEvalMapInterruptibly(
+                            is,
+                            rule -> true,
+                            (id, result) ->
+                                    MatcherAssert.assertThat(
+                                            published.put(id, result), Matchers.nullValue()));
+
+            Map<String, AnalysisResult> s = scoreMap.get();
+
+            MatcherAssert.assertThat(published, Matchers.equalTo(s));
+        }
+    }
+
+    @Test
+    void shouldParseRecordingOnExecutor() throws Exception {
+        InterruptibleReportGenerator generator =
+                new InterruptibleReportGenerator(
+                        Executors.newSingleThreadExecutor(r -> new Thread(r, "report-executor")));
+        Set<String> readerThreads = ConcurrentHashMap.newKeySet();
+        try (InputStream is =
+                new FilterInputStream(new FileInputStream(getJfrFile())) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        readerThreads.add(Thread.currentThread().getName());
+                        return super.read(b, off, len);
+                    }
+                }) {
+            Future<Map<String, AnalysisResult>> scoreMap =
+                    generator.generateEvalMapInterruptibly(is, rule -> true);
+
+            MatcherAssert.assertThat(scoreMap.get().entrySet(), Matchers.not(Matchers.empty()));
+            MatcherAssert.assertThat(readerThreads, Matchers.contains("report-executor"));
+        }
+    }
+
+    @Test
+    void shouldReuseCachedEvalMap() throws Exception {
+        ReportResultCache cache = new ReportResultCache();
+        InterruptibleReportGenerator generator =
+                new InterruptibleReportGenerator(Executors.newWorkStealingPool(1), cache);
+        Map<String, AnalysisResult> first;
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            first = generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(1));
+
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            Map<String, AnalysisResult> second =
+                    generator.generateEvalMapInterruptibly(is, rule -> true).get();
+            MatcherAssert.assertThat(second.keySet(), Matchers.equalTo(first.keySet()));
+            for (var entry : first.entrySet()) {
+                MatcherAssert.assertThat(
+                        second.get(entry.getKey()).getScore(),
+                        Matchers.equalTo(entry.getValue().getScore()));
+            }
+        }
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(1));
+
+        // a different rule selection over the same recording is a distinct report
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            Map<String, AnalysisResult> filtered =
+                    generator
+                            .generateEvalMapInterruptibly(
+                                    is, rule -> !"PID1Rule".equals(rule.getId()))
+                            .get();
+            MatcherAssert.assertThat(filtered.get("PID1Rule").getScore(), Matchers.equalTo(-1.0));
+        }
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(2));
+    }
+
+    @Test
+    void shouldReleaseAdmissionBudgetWhenComplete() throws Exception {
+        ReportAdmissionController admission = new ReportAdmissionController(Long.MAX_VALUE);
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .admissionController(admission)
+                        .build();
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            MatcherAssert.assertThat(
+                    generator.generateEvalMapInterruptibly(is, rule -> true).get().entrySet(),
+                    Matchers.not(Matchers.empty()));
+        }
+        MatcherAssert.assertThat(admission.getReservedBytes(), Matchers.equalTo(0L));
+
+        // the measured size of the recording now informs the estimate for unknown sizes
+        MatcherAssert.assertThat(
+                admission.estimate(-1),
+                Matchers.equalTo(
+                        (long)
+                                (getJfrFile().length()
+                                        * ReportAdmissionController.DEFAULT_HEAP_MULTIPLIER)));
+    }
+
+    @Test
+    void shouldRenderLazyEvaluationsOnFirstRead() throws Exception {
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .lazyEvaluations(true)
+                        .build();
+        Map<String, AnalysisResult> eager;
+        Map<String, AnalysisResult> lazy;
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            eager = this.generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            lazy = generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+
+        MatcherAssert.assertThat(lazy.keySet(), Matchers.equalTo(eager.keySet()));
+        for (var entry : lazy.entrySet()) {
+            AnalysisResult.Evaluation evaluation = entry.getValue().getEvaluation();
+            MatcherAssert.assertThat(evaluation.isRendered(), Matchers.is(false));
+            AnalysisResult.Evaluation expected = eager.get(entry.getKey()).getEvaluation();
+            MatcherAssert.assertThat(
+                    evaluation.getSummary(), Matchers.equalTo(expected.getSummary()));
+            MatcherAssert.assertThat(evaluation.isRendered(), Matchers.is(true));
+            MatcherAssert.assertThat(
+                    evaluation.getExplanation(), Matchers.equalTo(expected.getExplanation()));
+            MatcherAssert.assertThat(
+                    evaluation.getSolution(), Matchers.equalTo(expected.getSolution()));
+            MatcherAssert.assertThat(
+                    evaluation.getSuggestions().size(),
+                    Matchers.equalTo(expected.getSuggestions().size()));
+        }
+    }
+
+    @Test
+    void shouldReportStageTimings() throws Exception {
+        Map<String, Duration> ruleTimings = new ConcurrentHashMap<>();
+        List<Long> parsedBytes = new CopyOnWriteArrayList<>();
+        List<Duration> queueWaits = new CopyOnWriteArrayList<>();
+        CompletableFuture<Duration> completed = new CompletableFuture<>();
+        ReportMetricsListener listener =
+                new ReportMetricsListener() {
+                    @Override
+                    public void queueWaited(Duration wait) {
+                        queueWaits.add(wait);
+                    }
+
+                    @Override
+                    public void recordingParsed(long bytes, Duration duration) {
+                        parsedBytes.add(bytes);
+                    }
+
+                    @Override
+                    public void ruleEvaluated(String ruleId, Duration duration) {
+                        ruleTimings.put(ruleId, duration);
+                    }
+
+                    @Override
+                    public void reportCompleted(Duration duration) {
+                        completed.complete(duration);
+                    }
+                };
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .metricsListener(listener)
+                        .build();
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            generator
+                    .generateEvalMapInterruptibly(is, rule -> "PID1Rule".equals(rule.getId()))
+                    .get();
+        }
+
+        MatcherAssert.assertThat(queueWaits, Matchers.hasSize(1));
+        MatcherAssert.assertThat(parsedBytes, Matchers.contains(getJfrFile().length()));
+        MatcherAssert.assertThat(ruleTimings.keySet(), Matchers.contains("PID1Rule"));
+        MatcherAssert.assertThat(
+                completed.get(), Matchers.greaterThanOrEqualTo(ruleTimings.get("PID1Rule")));
+    }
+
+    @Test
+    void shouldMarkRulesExceedingDeadlineAsTimedOut() throws Exception {
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .ruleTimeout(Duration.ofNanos(1))
+                        .build();
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            Map<String, AnalysisResult> s =
+                    generator.generateEvalMapInterruptibly(is, rule -> true).get();
+
+            MatcherAssert.assertThat(
+                    s.size(), Matchers.equalTo(RuleRegistry.getRules().size() + CUSTOM_RULES_SIZE));
+            MatcherAssert.assertThat(
+                    s.values(),
+                    Matchers.hasItem(Matchers.hasProperty("timedOut", Matchers.is(true))));
+            for (AnalysisResult result : s.values()) {
+                if (result.isTimedOut()) {
+                    MatcherAssert.assertThat(result.getScore(), Matchers.equalTo(-1.0));
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldFailReportExceedingDeadlineBeforeParsing() throws Exception {
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .reportTimeout(Duration.ofNanos(1))
+                        .build();
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            Future<Map<String, AnalysisResult>> scoreMap =
+                    generator.generateEvalMapInterruptibly(is, rule -> true);
+
+            ExecutionException ee =
+                    Assertions.assertThrows(ExecutionException.class, scoreMap::get);
+            MatcherAssert.assertThat(ee.getCause(), Matchers.instanceOf(TimeoutException.class));
+        }
+    }
+
+    @Test
+    void shouldProduceSameEvalMapFromChunkedFile() throws Exception {
+        Map<String, AnalysisResult> fromStream;
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            fromStream = generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+
+        Map<String, AnalysisResult> fromFile =
+                generator.generateEvalMapInterruptibly(getJfrFile().toPath(), rule -> true).get();
+
+        MatcherAssert.assertThat(fromFile.keySet(), Matchers.equalTo(fromStream.keySet()));
+        for (var entry : fromStream.entrySet()) {
+            MatcherAssert.assertThat(
+                    entry.getKey(),
+                    fromFile.get(entry.getKey()).getScore(),
+                    Matchers.equalTo(entry.getValue().getScore()));
+        }
+    }
+
+    @Test
+    void shouldParseOnlyNewChunksIncrementally(@TempDir Path tempDir) throws Exception {
+        List<Long> parsedBytes = new CopyOnWriteArrayList<>();
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .metricsListener(
+                                new ReportMetricsListener() {
+                                    @Override
+                                    public void recordingParsed(long bytes, Duration duration) {
+                                        parsedBytes.add(bytes);
+                                    }
+                                })
+                        .build();
+        byte[] bytes = Files.readAllBytes(getJfrFile().toPath());
+        List<JfrChunk> chunks = JfrChunk.readChunks(getJfrFile().toPath()).get();
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(2));
+        long firstSize = chunks.get(0).getSize();
+        long secondSize = chunks.get(1).getSize();
+        Path head = tempDir.resolve("head.jfr");
+        Files.write(head, Arrays.copyOfRange(bytes, 0, (int) firstSize));
+        Path tail = tempDir.resolve("tail.jfr");
+        Files.write(tail, Arrays.copyOfRange(bytes, (int) firstSize, bytes.length));
+        IncrementalRecording state = new IncrementalRecording();
+
+        generator.generateEvalMapIncrementally(head, state, rule -> true).get();
+        MatcherAssert.assertThat(parsedBytes, Matchers.contains(firstSize));
+        MatcherAssert.assertThat(state.getRetainedChunks(), Matchers.equalTo(1));
+
+        // the recording has since grown by a chunk, and only that chunk is parsed
+        Map<String, AnalysisResult> incremental =
+                generator
+                        .generateEvalMapIncrementally(getJfrFile().toPath(), state, rule -> true)
+                        .get();
+        MatcherAssert.assertThat(parsedBytes, Matchers.contains(firstSize, secondSize));
+        MatcherAssert.assertThat(state.getRetainedChunks(), Matchers.equalTo(2));
+        Map<String, AnalysisResult> full;
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            full = generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+        MatcherAssert.assertThat(incremental.keySet(), Matchers.equalTo(full.keySet()));
+        for (var entry : full.entrySet()) {
+            // events are summed in a different order, so allow for rounding
+            MatcherAssert.assertThat(
+                    entry.getKey(),
+                    incremental.get(entry.getKey()).getScore(),
+                    Matchers.closeTo(entry.getValue().getScore(), 1e-9));
+        }
+
+        // the first chunk has since been removed from the recording, so it is evicted
+        parsedBytes.clear();
+        generator.generateEvalMapIncrementally(tail, state, rule -> true).get();
+        MatcherAssert.assertThat(parsedBytes, Matchers.contains(0L));
+        MatcherAssert.assertThat(state.getRetainedChunks(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldKeepAdmissionEstimateAcrossIncrementalReports() throws Exception {
+        ReportAdmissionController admission = new ReportAdmissionController(Long.MAX_VALUE);
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .admissionController(admission)
+                        .build();
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+        long estimate = admission.estimate(-1);
+
+        // only the first pass parses anything, and none of them parses a whole unknown stream
+        IncrementalRecording state = new IncrementalRecording();
+        for (int i = 0; i < 5; i++) {
+            generator
+                    .generateEvalMapIncrementally(getJfrFile().toPath(), state, rule -> true)
+                    .get();
+        }
+
+        MatcherAssert.assertThat(admission.estimate(-1), Matchers.equalTo(estimate));
+        MatcherAssert.assertThat(admission.getReservedBytes(), Matchers.equalTo(0L));
+    }
+
+    @Test
+    void shouldScheduleCostliestRuleFirst() throws Exception {
+        List<String> evaluated = new CopyOnWriteArrayList<>();
+        ReportMetricsListener listener =
+                new ReportMetricsListener() {
+                    @Override
+                    public void ruleEvaluated(String ruleId, Duration duration) {
+                        evaluated.add(ruleId);
+                    }
+                };
+        generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .metricsListener(listener)
+                        .build();
+        generator.generateEvalMapInterruptibly(getJfrFile().toPath(), rule -> true).get();
+
+        // make the last independent rule to have been evaluated by far the most expensive
+        RuleCostProfile profile = new RuleCostProfile();
+        String costliest = null;
+        for (IRule rule : RuleRegistry.getRules()) {
+            if (evaluated.contains(rule.getId())) {
+                profile.record(rule.getId(), Duration.ofNanos(1), 1);
+                if (rule.getClass().getAnnotation(DependsOn.class) == null) {
+                    costliest = rule.getId();
+                }
+            }
+        }
+        MatcherAssert.assertThat(costliest, Matchers.not(Matchers.equalTo(evaluated.get(0))));
+        profile.record(costliest, Duration.ofSeconds(1), 1);
+        evaluated.clear();
+        generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .metricsListener(listener)
+                        .ruleCostProfile(profile)
+                        .build();
+        generator.generateEvalMapInterruptibly(getJfrFile().toPath(), rule -> true).get();
+
+        MatcherAssert.assertThat(evaluated.get(0), Matchers.equalTo(costliest));
+    }
+
+    @Test
+    void shouldPreviewSampleBeforeFullReport() throws Exception {
+        List<Long> parsedBytes = new CopyOnWriteArrayList<>();
+        ReportAdmissionController admission = new ReportAdmissionController(Long.MAX_VALUE);
+        generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .admissionController(admission)
+                        .metricsListener(
+                                new ReportMetricsListener() {
+                                    @Override
+                                    public void recordingParsed(long bytes, Duration duration) {
+                                        parsedBytes.add(bytes);
+                                    }
+                                })
+                        .build();
+        Path file = getJfrFile().toPath();
+        List<JfrChunk> chunks = JfrChunk.readChunks(file).get();
+
+        PreviewReport report = generator.generatePreviewInterruptibly(file, 0.5, rule -> true);
+
+        Map<String, AnalysisResult> preview = report.getPreview().get();
+        MatcherAssert.assertThat(
+                preview.size(),
+                Matchers.equalTo(RuleRegistry.getRules().size() + CUSTOM_RULES_SIZE));
+        MatcherAssert.assertThat(
+                preview.values().stream().allMatch(AnalysisResult::isApproximate),
+                Matchers.is(true));
+        Map<String, AnalysisResult> full = report.getReport().get();
+        MatcherAssert.assertThat(
+                full.values().stream().noneMatch(AnalysisResult::isApproximate), Matchers.is(true));
+        MatcherAssert.assertThat(
+                parsedBytes, Matchers.contains(chunks.get(1).getSize(), Files.size(file)));
+        // the sample is not taken as an observation of a whole recording's size
+        MatcherAssert.assertThat(
+                admission.estimate(-1), Matchers.equalTo(admission.estimate(Files.size(file))));
+    }
+
+    @Test
+    void shouldKeepUnknownSampleSize() {
+        MatcherAssert.assertThat(PreviewSampler.sampleSize(-1, 0.5), Matchers.equalTo(-1L));
+        MatcherAssert.assertThat(PreviewSampler.sampleSize(10, 0.5), Matchers.equalTo(5L));
+    }
+
+    @Test
+    void shouldSampleChunksEvenly() {
+        List<JfrChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            chunks.add(Mockito.mock(JfrChunk.class));
+        }
+
+        List<JfrChunk> sample = PreviewSampler.sample(chunks, 0.25);
+
+        MatcherAssert.assertThat(
+                sample, Matchers.contains(chunks.get(1), chunks.get(5), chunks.get(8)));
+        MatcherAssert.assertThat(PreviewSampler.sample(chunks, 1), Matchers.equalTo(chunks));
+        MatcherAssert.assertThat(
+                PreviewSampler.sample(chunks, 0.01), Matchers.contains(chunks.get(5)));
+    }
+
+    @Test
+    void shouldRejectInvalidSampleRatio() {
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        generator.generatePreviewInterruptibly(
+                                getJfrFile().toPath(), 0, rule -> true));
+    }
+
+    @Test
+    void shouldOnlyCountTimeoutsWhichWon() throws Exception {
+        Set<String> timedOut = ConcurrentHashMap.newKeySet();
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(4))
+                        .ruleTimeout(Duration.ofMillis(1))
+                        .metricsListener(
+                                new ReportMetricsListener() {
+                                    @Override
+                                    public void ruleTimedOut(String ruleId) {
+                                        timedOut.add(ruleId);
+                                    }
+                                })
+                        .build();
+
+        Map<String, AnalysisResult> s =
+                generator.generateEvalMapInterruptibly(getJfrFile().toPath(), rule -> true).get();
+
+        MatcherAssert.assertThat(
+                timedOut,
+                Matchers.equalTo(
+                        s.entrySet().stream()
+                                .filter(e -> e.getValue().isTimedOut())
+                                .map(Map.Entry::getKey)
+                                .collect(Collectors.toSet())));
+    }
+
+    @Test
+    void shouldStartDependentRuleAfterItsDependency() throws Exception {
+        Map<String, Long> started = new ConcurrentHashMap<>();
+        Map<String, Long> finished = new ConcurrentHashMap<>();
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(4))
+                        .metricsListener(
+                                new ReportMetricsListener() {
+                                    @Override
+                                    public void ruleEvaluated(String ruleId, Duration duration) {
+                                        long now = System.nanoTime();
+                                        // no earlier than the evaluation actually started
+                                        started.put(ruleId, now - duration.toNanos());
+                                        finished.put(ruleId, now);
+                                    }
+                                })
+                        .build();
+
+        generator.generateEvalMapInterruptibly(getJfrFile().toPath(), rule -> true).get();
+
+        int pairs = 0;
+        for (IRule rule : RuleRegistry.getRules()) {
+            DependsOn dependency = rule.getClass().getAnnotation(DependsOn.class);
+            if (dependency == null || !started.containsKey(rule.getId())) {
+                continue;
+            }
+            String dependencyId = dependency.value().getSimpleName();
+            MatcherAssert.assertThat(rule.getId(), finished, Matchers.hasKey(dependencyId));
+            MatcherAssert.assertThat(
+                    rule.getId(),
+                    started.get(rule.getId()),
+                    Matchers.greaterThanOrEqualTo(finished.get(dependencyId)));
+            pairs++;
+        }
+        MatcherAssert.assertThat(pairs, Matchers.greaterThan(0));
+    }
+
+    @Test
+    void shouldNotEvaluateRuleWithUnselectedDependency() throws Exception {
+        IRule dependent =
+                RuleRegistry.getRules().stream()
+                        .filter(rule -> rule.getClass().getAnnotation(DependsOn.class) != null)
+                        .findFirst()
+                        .orElseThrow();
+        String dependencyId =
+                dependent.getClass().getAnnotation(DependsOn.class).value().getSimpleName();
+        List<String> evaluated = new CopyOnWriteArrayList<>();
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .metricsListener(
+                                new ReportMetricsListener() {
+                                    @Override
+                                    public void ruleEvaluated(String ruleId, Duration duration) {
+                                        evaluated.add(ruleId);
+                                    }
+                                })
+                        .build();
+
+        Map<String, AnalysisResult> s =
+                generator
+                        .generateEvalMapInterruptibly(
+                                getJfrFile().toPath(),
+                                rule -> dependent.getId().equals(rule.getId()))
+                        .get();
+
+        MatcherAssert.assertThat(s.get(dependencyId).getScore(), Matchers.equalTo(-1.0));
+        MatcherAssert.assertThat(s.get(dependent.getId()).getScore(), Matchers.equalTo(-1.0));
+        MatcherAssert.assertThat(evaluated, Matchers.empty());
+    }
+
+    @Test
+    void shouldEvaluateEachRuleAsInFullReportWhenFocusedOnIt() throws Exception {
+        InterruptibleReportGenerator generator =
+                new InterruptibleReportGenerator(Executors.newWorkStealingPool(4));
+        Path file = getJfrFile().toPath();
+        Map<String, AnalysisResult> full =
+                generator.generateEvalMapInterruptibly(file, rule -> true).get();
+
+        Map<String, IRule> rules =
+                RuleRegistry.getRules().stream()
+                        .collect(Collectors.toMap(IRule::getId, rule -> rule));
+        Map<String, Future<Map<String, AnalysisResult>>> focused = new LinkedHashMap<>();
+        for (String id : full.keySet()) {
+            // a rule is only evaluated along with the rules it depends on
+            Set<String> selected = new HashSet<>();
+            selected.add(id);
+            IRule rule = rules.get(id);
+            while (rule != null && rule.getClass().getAnnotation(DependsOn.class) != null) {
+                String dependency =
+                        rule.getClass().getAnnotation(DependsOn.class).value().getSimpleName();
+                selected.add(dependency);
+                rule = rules.get(dependency);
+            }
+            focused.put(
+                    id,
+                    generator.generateEvalMapInterruptibly(
+                            file, r -> selected.contains(r.getId())));
+        }
+        for (var entry : focused.entrySet()) {
+            // a rule which reads events it does not declare as required sees fewer events when
+            // the others are discarded, and must be listed in UNDECLARED_REQUIRED
+            AnalysisResult expected = full.get(entry.getKey());
+            AnalysisResult actual = entry.getValue().get().get(entry.getKey());
+            MatcherAssert.assertThat(
+                    entry.getKey(),
+                    Severity.get(actual.getScore()),
+                    Matchers.equalTo(Severity.get(expected.getScore())));
+            MatcherAssert.assertThat(
+                    entry.getKey(), actual.getScore(), Matchers.equalTo(expected.getScore()));
+        }
+
+        for (var entry : RequiredEventsParserExtension.UNDECLARED_REQUIRED.entrySet()) {
+            IRule rule = rules.get(entry.getKey());
+            Assertions.assertNotNull(rule, entry.getKey());
+            // an event type the rule already declares does not need to be listed
+            MatcherAssert.assertThat(
+                    entry.getKey(),
+                    rule.getRequiredEvents().keySet(),
+                    Matchers.not(Matchers.hasItems(entry.getValue().toArray(new String[0]))));
+        }
+    }
+
+    @Test
+    void shouldShareParsedRecordingBetweenRuleFilters() throws Exception {
+        List<Long> parsedBytes = new CopyOnWriteArrayList<>();
+        ParsedRecordingCache cache = new ParsedRecordingCache();
+        ReportAdmissionController admission = new ReportAdmissionController(Long.MAX_VALUE);
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .recordingCache(cache)
+                        .admissionController(admission)
+                        .metricsListener(
+                                new ReportMetricsListener() {
+                                    @Override
+                                    public void recordingParsed(long bytes, Duration duration) {
+                                        parsedBytes.add(bytes);
+                                    }
+                                })
+                        .build();
+        Path file = getJfrFile().toPath();
+
+        Future<Map<String, AnalysisResult>> all =
+                generator.generateEvalMapInterruptibly(file, rule -> true);
+        Future<Map<String, AnalysisResult>> filtered =
+                generator.generateEvalMapInterruptibly(
+                        file, rule -> !"PID1Rule".equals(rule.getId()));
+
+        Map<String, AnalysisResult> expected =
+                this.generator.generateEvalMapInterruptibly(file, rule -> true).get();
+        for (var entry : expected.entrySet()) {
+            MatcherAssert.assertThat(
+                    entry.getKey(),
+                    all.get().get(entry.getKey()).getScore(),
+                    Matchers.equalTo(entry.getValue().getScore()));
+        }
+        MatcherAssert.assertThat(filtered.get().get("PID1Rule").getScore(), Matchers.equalTo(-1.0));
+        MatcherAssert.assertThat(parsedBytes, Matchers.contains(Files.size(file)));
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(1));
+        // only the report which parsed the recording is taken as an observation of its size
+        MatcherAssert.assertThat(
+                admission.estimate(-1), Matchers.equalTo(admission.estimate(Files.size(file))));
+    }
+
+    @Test
+    void shouldReleaseWaitersWhenSharedParseIsCancelledBeforeRunning() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        ParsedRecordingCache cache = new ParsedRecordingCache();
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(executor).recordingCache(cache).build();
+        Path file = getJfrFile().toPath();
+
+        Future<Map<String, AnalysisResult>> owner =
+                generator.generateEvalMapInterruptibly(file, rule -> true);
+        // identify the recording, which starts the shared parse
+        executor.next().run();
+        Runnable queuedParse = executor.next();
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(1));
+
+        Future<Map<String, AnalysisResult>> waiter =
+                generator.generateEvalMapInterruptibly(
+                        file, rule -> "PID1Rule".equals(rule.getId()));
+        // the second report finds the shared parse in progress and waits on it
+        executor.next().run();
+
+        owner.cancel(true);
+        queuedParse.run();
+        Instant deadline = Instant.now().plusSeconds(30);
+        while (!waiter.isDone()) {
+            Assertions.assertTrue(Instant.now().isBefore(deadline), "waiter never completed");
+            Runnable r = executor.poll(100);
+            if (r != null) {
+                r.run();
+            }
+        }
+
+        Assertions.assertThrows(CancellationException.class, owner::get);
+        MatcherAssert.assertThat(
+                waiter.get().get("PID1Rule").getScore(), Matchers.greaterThanOrEqualTo(0.0));
+    }
+
+    @Test
+    void shouldSkipChunksOutsideIncrementalWindow() throws Exception {
+        IncrementalRecording state = new IncrementalRecording(Duration.ofNanos(1));
+
+        Map<String, AnalysisResult> s =
+                generator
+                        .generateEvalMapIncrementally(getJfrFile().toPath(), state, rule -> true)
+                        .get();
+
+        MatcherAssert.assertThat(
+                s.size(), Matchers.equalTo(RuleRegistry.getRules().size() + CUSTOM_RULES_SIZE));
+        MatcherAssert.assertThat(state.getRetainedChunks(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldReportEachRecordingOfBatch(@TempDir Path tempDir) throws Exception {
+        Path invalid = tempDir.resolve("invalid.jfr");
+        Files.writeString(invalid, "not a recording");
+        Map<String, Path> recordings = new LinkedHashMap<>();
+        recordings.put("first", getJfrFile().toPath());
+        recordings.put("invalid", invalid);
+        recordings.put("second", getJfrFile().toPath());
+
+        BatchReport<String> batch =
+                generator
+                        .generateBatchInterruptibly(
+                                recordings, rule -> "PID1Rule".equals(rule.getId()), 2)
+                        .get();
+
+        MatcherAssert.assertThat(
+                batch.getReports().keySet(), Matchers.containsInAnyOrder("first", "second"));
+        for (Map<String, AnalysisResult> report : batch.getReports().values()) {
+            MatcherAssert.assertThat(
+                    report.get("PID1Rule").getScore(), Matchers.greaterThanOrEqualTo(0.0));
+        }
+        MatcherAssert.assertThat(batch.getFailures().keySet(), Matchers.contains("invalid"));
+    }
+
+    @Test
+    void shouldAbandonSharedParseOfCancelledBatch() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        ParsedRecordingCache cache = new ParsedRecordingCache();
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(executor).recordingCache(cache).build();
+
+        Future<BatchReport<String>> batch =
+                generator.generateBatchInterruptibly(
+                        Map.of("first", getJfrFile().toPath()), rule -> true, 1);
+        // identify the recording, which starts the shared parse
+        executor.next().run();
+        Runnable queuedParse = executor.next();
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(1));
+
+        batch.cancel(true);
+        queuedParse.run();
+
+        // the parse never ran, but is still abandoned rather than left pending in the cache
+        Instant deadline = Instant.now().plusSeconds(30);
+        while (cache.size() > 0) {
+            Assertions.assertTrue(Instant.now().isBefore(deadline), "parse was left pending");
+            Runnable r = executor.poll(100);
+            if (r != null) {
+                r.run();
+            }
+        }
+        Assertions.assertThrows(CancellationException.class, batch::get);
+    }
+
+    @Test
+    void shouldCompleteEmptyBatch() throws Exception {
+        BatchReport<String> batch =
+                generator.generateBatchInterruptibly(Map.<String, Path>of(), rule -> true, 1).get();
+
+        MatcherAssert.assertThat(batch.getReports().entrySet(), Matchers.empty());
+        MatcherAssert.assertThat(batch.getFailures().entrySet(), Matchers.empty());
+    }
+
+    @Test
+    void shouldProduceSameEvalMapForWindowCoveringRecording() throws Exception {
+        List<JfrChunk> chunks = JfrChunk.readChunks(getJfrFile().toPath()).get();
+        // events may begin before the chunk they were committed to
+        Instant start = toInstant(chunks.get(0).getStartNanos()).minus(Duration.ofHours(1));
+        Instant end = toInstant(chunks.get(chunks.size() - 1).getEndNanos());
+
+        Map<String, AnalysisResult> windowed =
+                generator
+                        .generateEvalMapInterruptibly(
+                                getJfrFile().toPath(), start, end, rule -> true)
+                        .get();
+
+        Map<String, AnalysisResult> full;
+        try (InputStream is = new FileInputStream(getJfrFile())) {
+            full = generator.generateEvalMapInterruptibly(is, rule -> true).get();
+        }
+        MatcherAssert.assertThat(windowed.keySet(), Matchers.equalTo(full.keySet()));
+        for (var entry : full.entrySet()) {
+            MatcherAssert.assertThat(
+                    entry.getKey(),
+                    windowed.get(entry.getKey()).getScore(),
+                    Matchers.closeTo(entry.getValue().getScore(), 1e-9));
+        }
+    }
+
+    @Test
+    void shouldSkipChunksOutsideTimeWindow() throws Exception {
+        List<Long> parsedBytes = new CopyOnWriteArrayList<>();
+        ReportAdmissionController admission = new ReportAdmissionController(Long.MAX_VALUE);
+        InterruptibleReportGenerator generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .admissionController(admission)
+                        .metricsListener(
+                                new ReportMetricsListener() {
+                                    @Override
+                                    public void recordingParsed(long bytes, Duration duration) {
+                                        parsedBytes.add(bytes);
+                                    }
+                                })
+                        .build();
+        List<JfrChunk> chunks = JfrChunk.readChunks(getJfrFile().toPath()).get();
+        JfrChunk last = chunks.get(chunks.size() - 1);
+        long estimate = admission.estimate(-1);
+
+        Map<String, AnalysisResult> s =
+                generator
+                        .generateEvalMapInterruptibly(
+                                getJfrFile().toPath(),
+                                toInstant(last.getStartNanos() + 1),
+                                toInstant(last.getEndNanos()),
+                                rule -> true)
+                        .get();
+
+        MatcherAssert.assertThat(
+                s.size(), Matchers.equalTo(RuleRegistry.getRules().size() + CUSTOM_RULES_SIZE));
+        MatcherAssert.assertThat(parsedBytes, Matchers.contains(last.getSize()));
+        // part of a recording says little about the size of others
+        MatcherAssert.assertThat(admission.estimate(-1), Matchers.equalTo(estimate));
+    }
+
+    @Test
+    void shouldFailForTimeWindowOutsideRecording() throws Exception {
+        Future<Map<String, AnalysisResult>> scoreMap =
+                generator.generateEvalMapInterruptibly(
+                        getJfrFile().toPath(),
+                        Instant.EPOCH,
+                        Instant.EPOCH.plusSeconds(60),
+                        rule -> true);
+
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class, scoreMap::get);
+        MatcherAssert.assertThat(
+                ee.getCause(), Matchers.instanceOf(IllegalArgumentException.class));
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        generator.generateEvalMapInterruptibly(
+                                getJfrFile().toPath(),
+                                Instant.EPOCH.plusSeconds(60),
+                                Instant.EPOCH,
+                                rule -> true));
+    }
+
+    /** Runs submitted tasks only when the test steps through them. */
+    private static class ManualExecutor extends AbstractExecutorService {
+        private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+        Runnable next() throws InterruptedException {
+            Runnable r = poll(5000);
+            Assertions.assertNotNull(r, "no task was submitted");
+            return r;
+        }
+
+        Runnable poll(long timeoutMs) throws InterruptedException {
+            return tasks.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {}
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<>(tasks);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+
+    private static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(0, epochNanos);
+    }
+
     private synchronized File getJfrFile() throws Exception {
         return Paths.get(getClass().getResource("/profiling_sample.jfr").toURI()).toFile();
     }
@@ -0,0 +1,75 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JfrChunkTest {
+
+    @TempDir Path tempDir;
+
+    @Test
+    void shouldReadChunkHeaders() throws Exception {
+        Path file = getJfrFile();
+
+        List<JfrChunk> chunks = JfrChunk.readChunks(file).orElseThrow();
+
+        MatcherAssert.assertThat(chunks, Matchers.hasSize(2));
+        MatcherAssert.assertThat(chunks.get(0).getPosition(), Matchers.equalTo(0L));
+        MatcherAssert.assertThat(
+                chunks.get(1).getPosition(), Matchers.equalTo(chunks.get(0).getSize()));
+        MatcherAssert.assertThat(
+                chunks.get(0).getSize() + chunks.get(1).getSize(),
+                Matchers.equalTo(Files.size(file)));
+        MatcherAssert.assertThat(
+                chunks.get(1).getStartNanos(),
+                Matchers.greaterThanOrEqualTo(chunks.get(0).getEndNanos()));
+        MatcherAssert.assertThat(chunks.get(0).getMajorVersion(), Matchers.equalTo((short) 2));
+    }
+
+    @Test
+    void shouldRejectTruncatedFile() throws Exception {
+        byte[] bytes = Files.readAllBytes(getJfrFile());
+        Path truncated = tempDir.resolve("truncated.jfr");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+
+        MatcherAssert.assertThat(
+                JfrChunk.readChunks(truncated), Matchers.equalTo(Optional.empty()));
+    }
+
+    @Test
+    void shouldRejectNonJfrFile() throws Exception {
+        Path file = tempDir.resolve("text.jfr");
+        Files.writeString(
+                file, "this is not a flight recording, but it is long enough to have a header");
+
+        MatcherAssert.assertThat(JfrChunk.readChunks(file), Matchers.equalTo(Optional.empty()));
+    }
+
+    private Path getJfrFile() throws Exception {
+        return Paths.get(getClass().getResource("/profiling_sample.jfr").toURI());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.util.Pair;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class ParsedRecordingCacheTest {
+
+    @Test
+    void shouldParseConcurrentRequestsOnce() throws Exception {
+        ParsedRecordingCache cache = new ParsedRecordingCache();
+        IItemCollection items = Mockito.mock(IItemCollection.class);
+        CompletableFuture<Pair<IItemCollection, Long>> load = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<Pair<IItemCollection, Long>> first =
+                cache.get("a", () -> countLoad(loads, load));
+        CompletableFuture<Pair<IItemCollection, Long>> second =
+                cache.get("a", () -> countLoad(loads, load));
+        MatcherAssert.assertThat(second.isDone(), Matchers.is(false));
+        load.complete(new Pair<>(items, 10L));
+
+        MatcherAssert.assertThat(loads.get(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(first.get().left, Matchers.sameInstance(items));
+        MatcherAssert.assertThat(first.get().right, Matchers.equalTo(10L));
+        MatcherAssert.assertThat(second.get().left, Matchers.sameInstance(items));
+        MatcherAssert.assertThat(second.get().right, Matchers.equalTo(-1L));
+        MatcherAssert.assertThat(
+                cache.get("a", () -> countLoad(loads, load)).get().left,
+                Matchers.sameInstance(items));
+        MatcherAssert.assertThat(loads.get(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void shouldTakeOverAbandonedParse() throws Exception {
+        ParsedRecordingCache cache = new ParsedRecordingCache();
+        IItemCollection items = Mockito.mock(IItemCollection.class);
+        CompletableFuture<Pair<IItemCollection, Long>> abandoned = new CompletableFuture<>();
+
+        CompletableFuture<Pair<IItemCollection, Long>> first = cache.get("a", () -> abandoned);
+        CompletableFuture<Pair<IItemCollection, Long>> second =
+                cache.get("a", () -> CompletableFuture.completedFuture(new Pair<>(items, 10L)));
+        abandoned.completeExceptionally(new CancellationException());
+
+        Assertions.assertThrows(ExecutionException.class, first::get);
+        MatcherAssert.assertThat(second.get().left, Matchers.sameInstance(items));
+        MatcherAssert.assertThat(second.get().right, Matchers.equalTo(10L));
+    }
+
+    @Test
+    void shouldNotRetainFailedParse() throws Exception {
+        ParsedRecordingCache cache = new ParsedRecordingCache();
+
+        CompletableFuture<Pair<IItemCollection, Long>> failed =
+                cache.get("a", () -> CompletableFuture.failedFuture(new IllegalStateException()));
+
+        Assertions.assertThrows(ExecutionException.class, failed::get);
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedBeyondByteBudget() throws Exception {
+        ParsedRecordingCache cache = new ParsedRecordingCache(25);
+        IItemCollection items = Mockito.mock(IItemCollection.class);
+
+        for (String key : new String[] {"a", "b", "a", "c"}) {
+            cache.get(key, () -> CompletableFuture.completedFuture(new Pair<>(items, 10L))).get();
+        }
+
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(2));
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("a", () -> countLoad(loads, CompletableFuture.completedFuture(null))).get();
+        MatcherAssert.assertThat(loads.get(), Matchers.equalTo(0));
+    }
+
+    private static CompletableFuture<Pair<IItemCollection, Long>> countLoad(
+            AtomicInteger loads, CompletableFuture<Pair<IItemCollection, Long>> load) {
+        loads.incrementAndGet();
+        return load;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import io.cryostat.core.reports.ReportAdmissionController.AdmissionRejectedException;
+import io.cryostat.core.reports.ReportAdmissionController.Reservation;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ReportAdmissionControllerTest {
+
+    @Test
+    void shouldQueueReportsUntilBudgetIsReleased() throws Exception {
+        ReportAdmissionController controller = new ReportAdmissionController(100, 2.0, 4);
+
+        CompletableFuture<Reservation> first = controller.reserve(30);
+        CompletableFuture<Reservation> second = controller.reserve(30);
+
+        MatcherAssert.assertThat(first.isDone(), Matchers.is(true));
+        MatcherAssert.assertThat(first.get().getBytes(), Matchers.equalTo(60L));
+        MatcherAssert.assertThat(second.isDone(), Matchers.is(false));
+        MatcherAssert.assertThat(controller.getQueueLength(), Matchers.equalTo(1));
+
+        first.get().release();
+        first.get().release();
+
+        MatcherAssert.assertThat(second.isDone(), Matchers.is(true));
+        MatcherAssert.assertThat(controller.getReservedBytes(), Matchers.equalTo(60L));
+        second.get().release();
+        MatcherAssert.assertThat(controller.getReservedBytes(), Matchers.equalTo(0L));
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        ReportAdmissionController controller = new ReportAdmissionController(100, 1.0, 1);
+
+        CompletableFuture<Reservation> running = controller.reserve(100);
+        CompletableFuture<Reservation> queued = controller.reserve(10);
+        CompletableFuture<Reservation> rejected = controller.reserve(10);
+
+        MatcherAssert.assertThat(running.isDone(), Matchers.is(true));
+        MatcherAssert.assertThat(queued.isDone(), Matchers.is(false));
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class, rejected::get);
+        MatcherAssert.assertThat(
+                ee.getCause(), Matchers.instanceOf(AdmissionRejectedException.class));
+
+        // withdrawing a queued report makes room for another
+        queued.cancel(false);
+        MatcherAssert.assertThat(controller.getQueueLength(), Matchers.equalTo(0));
+        CompletableFuture<Reservation> next = controller.reserve(10);
+        running.get().release();
+        MatcherAssert.assertThat(next.get().getBytes(), Matchers.equalTo(10L));
+    }
+
+    @Test
+    void shouldAdmitOversizedReportAlone() throws Exception {
+        ReportAdmissionController controller = new ReportAdmissionController(100, 1.0, 1);
+
+        CompletableFuture<Reservation> small = controller.reserve(10);
+        CompletableFuture<Reservation> large = controller.reserve(1000);
+
+        MatcherAssert.assertThat(large.isDone(), Matchers.is(false));
+        small.get().release();
+        MatcherAssert.assertThat(large.get().getBytes(), Matchers.equalTo(100L));
+    }
+
+    @Test
+    void shouldLearnEstimateFromMeasuredRecordings() throws Exception {
+        ReportAdmissionController controller =
+                new ReportAdmissionController(Long.MAX_VALUE, 2.0, 1);
+        MatcherAssert.assertThat(
+                controller.estimate(-1),
+                Matchers.equalTo(2 * ReportAdmissionController.DEFAULT_UNKNOWN_RECORDING_BYTES));
+
+        Reservation reservation = controller.reserve(-1).get();
+        reservation.update(1000);
+        MatcherAssert.assertThat(reservation.getBytes(), Matchers.equalTo(2000L));
+        MatcherAssert.assertThat(controller.getReservedBytes(), Matchers.equalTo(2000L));
+
+        controller.reserve(3000).get().update(3000);
+        MatcherAssert.assertThat(controller.estimate(-1), Matchers.equalTo(4000L));
+    }
+
+    @Test
+    void shouldResizeWithoutLearningEstimate() throws Exception {
+        ReportAdmissionController controller =
+                new ReportAdmissionController(Long.MAX_VALUE, 2.0, 1);
+        controller.reserve(1000).get().update(1000);
+
+        Reservation reservation = controller.reserve(500).get();
+        reservation.resize(0);
+
+        MatcherAssert.assertThat(reservation.getBytes(), Matchers.equalTo(1L));
+        MatcherAssert.assertThat(controller.estimate(-1), Matchers.equalTo(2000L));
+    }
+}
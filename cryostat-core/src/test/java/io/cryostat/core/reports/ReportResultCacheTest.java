@@ -0,0 +1,118 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult.Evaluation;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportResultCacheTest {
+
+    @TempDir Path tempDir;
+
+    @Test
+    void keyShouldIgnoreRuleOrder() {
+        byte[] digest = ReportResultCache.newDigest().digest(new byte[] {1, 2, 3});
+        MatcherAssert.assertThat(
+                ReportResultCache.key(digest, List.of("a", "b", "c")),
+                Matchers.equalTo(ReportResultCache.key(digest, List.of("c", "a", "b"))));
+        MatcherAssert.assertThat(
+                ReportResultCache.key(digest, List.of("a", "b")),
+                Matchers.not(
+                        Matchers.equalTo(ReportResultCache.key(digest, List.of("a", "b", "c")))));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntries() {
+        ReportResultCache cache = new ReportResultCache(2, Long.MAX_VALUE, null);
+        cache.put("a", report("a"));
+        cache.put("b", report("b"));
+        cache.get("a");
+        cache.put("c", report("c"));
+
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(cache.get("a").isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat(cache.get("b").isPresent(), Matchers.is(false));
+        MatcherAssert.assertThat(cache.get("c").isPresent(), Matchers.is(true));
+    }
+
+    @Test
+    void shouldEvictEntriesOverByteBudget() {
+        ReportResultCache cache = new ReportResultCache(100, 1, null);
+        cache.put("a", report("a"));
+        cache.put("b", report("b"));
+
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(cache.get("b").isPresent(), Matchers.is(true));
+    }
+
+    @Test
+    void shouldFallBackToDiskTier() {
+        ReportResultCache cache = new ReportResultCache(1, Long.MAX_VALUE, tempDir);
+        cache.put("a", report("a"));
+        cache.put("b", report("b"));
+
+        MatcherAssert.assertThat(cache.size(), Matchers.equalTo(1));
+        Map<String, AnalysisResult> a = cache.get("a").orElseThrow();
+        MatcherAssert.assertThat(a.get("a").getScore(), Matchers.equalTo(50.0));
+        MatcherAssert.assertThat(
+                a.get("a").getEvaluation().getSummary(), Matchers.equalTo("summary a"));
+        MatcherAssert.assertThat(a.get("a").getEvaluation().getSuggestions(), Matchers.hasSize(0));
+
+        ReportResultCache restarted = new ReportResultCache(1, Long.MAX_VALUE, tempDir);
+        MatcherAssert.assertThat(restarted.get("b").isPresent(), Matchers.is(true));
+
+        restarted.clear();
+        MatcherAssert.assertThat(restarted.get("b").isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void shouldMoveDiskEntriesIntoPlace() throws Exception {
+        ReportResultCache cache = new ReportResultCache(1, Long.MAX_VALUE, tempDir);
+        cache.put("a", report("a"));
+        cache.put("a", report("b"));
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            MatcherAssert.assertThat(
+                    files.map(p -> p.getFileName().toString()).collect(Collectors.toList()),
+                    Matchers.contains("a.report"));
+        }
+        MatcherAssert.assertThat(
+                new ReportResultCache(1, Long.MAX_VALUE, tempDir).get("a").orElseThrow(),
+                Matchers.hasKey("b"));
+    }
+
+    private static Map<String, AnalysisResult> report(String id) {
+        return Map.of(
+                id,
+                new AnalysisResult(
+                        "name " + id,
+                        "topic",
+                        50.0,
+                        new Evaluation("summary " + id, "explanation", "solution", List.of())));
+    }
+}
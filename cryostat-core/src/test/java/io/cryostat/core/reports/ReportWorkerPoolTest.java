@@ -0,0 +1,162 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportWorkerPoolTest {
+
+    private static final long WORKER_HEAP = 256 * 1024 * 1024;
+
+    ReportWorkerPool pool;
+    InterruptibleReportGenerator generator;
+
+    @BeforeEach
+    void setup() throws Exception {
+        // replace the worker after every report
+        pool = new ReportWorkerPool(1, WORKER_HEAP, 1);
+        generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .workerPool(pool)
+                        .build();
+    }
+
+    @AfterEach
+    void teardown() {
+        pool.close();
+    }
+
+    @Test
+    void shouldGenerateReportsInWorkerProcesses() throws Exception {
+        Map<String, AnalysisResult> expected =
+                new InterruptibleReportGenerator(Executors.newWorkStealingPool(1))
+                        .generateEvalMapInterruptibly(getJfrFile(), rule -> true)
+                        .get();
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, AnalysisResult> remote =
+                    generator.generateEvalMapInterruptibly(getJfrFile(), rule -> true).get();
+
+            MatcherAssert.assertThat(remote.keySet(), Matchers.equalTo(expected.keySet()));
+            for (var entry : expected.entrySet()) {
+                AnalysisResult result = remote.get(entry.getKey());
+                MatcherAssert.assertThat(
+                        entry.getKey(),
+                        result.getScore(),
+                        Matchers.equalTo(entry.getValue().getScore()));
+                MatcherAssert.assertThat(
+                        result.getEvaluation().getSummary(),
+                        Matchers.equalTo(entry.getValue().getEvaluation().getSummary()));
+            }
+        }
+    }
+
+    @Test
+    void shouldContainFailedReport(@TempDir Path tempDir) throws Exception {
+        Path invalid = tempDir.resolve("invalid.jfr");
+        Files.writeString(invalid, "not a recording");
+
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () -> generator.generateEvalMapInterruptibly(invalid, rule -> true).get());
+
+        MatcherAssert.assertThat(
+                ee.getCause(), Matchers.instanceOf(ReportWorkerPool.WorkerFailedException.class));
+        MatcherAssert.assertThat(
+                ((ReportWorkerPool.WorkerFailedException) ee.getCause()).getFailureType(),
+                Matchers.notNullValue());
+        MatcherAssert.assertThat(
+                generator.generateEvalMapInterruptibly(getJfrFile(), rule -> true).get(),
+                Matchers.not(Matchers.anEmptyMap()));
+    }
+
+    @Test
+    void shouldContainWorkerCrash() throws Exception {
+        pool.close();
+        // too small a heap to parse the recording, so the worker exits when it runs out
+        pool = ReportWorkerPool.Builder.create(1, 8 * 1024 * 1024).reportsPerWorker(1).build();
+        generator =
+                InterruptibleReportGenerator.Builder.create(Executors.newWorkStealingPool(1))
+                        .workerPool(pool)
+                        .build();
+
+        ExecutionException ee =
+                Assertions.assertThrows(
+                        ExecutionException.class,
+                        () ->
+                                generator
+                                        .generateEvalMapInterruptibly(getJfrFile(), rule -> true)
+                                        .get());
+
+        MatcherAssert.assertThat(
+                ee.getCause(), Matchers.instanceOf(ReportWorkerPool.WorkerFailedException.class));
+        MatcherAssert.assertThat(
+                ((ReportWorkerPool.WorkerFailedException) ee.getCause()).getFailureType(),
+                Matchers.nullValue());
+    }
+
+    @Test
+    void shouldFailFastIfWorkerCannotStart(@TempDir Path tempDir) {
+        Assertions.assertThrows(
+                IOException.class,
+                () ->
+                        ReportWorkerPool.Builder.create(1, WORKER_HEAP)
+                                .classPath(tempDir.toString())
+                                .build());
+        Assertions.assertThrows(
+                IOException.class,
+                () ->
+                        ReportWorkerPool.Builder.create(1, WORKER_HEAP)
+                                .jvmArgs(List.of("-XX:+NoSuchOption"))
+                                .build());
+    }
+
+    @Test
+    void shouldReplaceWorkerOfCancelledReport() throws Exception {
+        Future<Map<String, AnalysisResult>> cancelled =
+                generator.generateEvalMapInterruptibly(getJfrFile(), rule -> true);
+        cancelled.cancel(true);
+
+        Assertions.assertThrows(CancellationException.class, cancelled::get);
+        MatcherAssert.assertThat(
+                generator.generateEvalMapInterruptibly(getJfrFile(), rule -> true).get(),
+                Matchers.not(Matchers.anEmptyMap()));
+    }
+
+    private Path getJfrFile() {
+        return Paths.get(getClass().getClassLoader().getResource("profiling_sample.jfr").getPath());
+    }
+}
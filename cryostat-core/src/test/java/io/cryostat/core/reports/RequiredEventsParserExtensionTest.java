@@ -0,0 +1,107 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmc.flightrecorder.jdk.JdkTypeIDs;
+import org.openjdk.jmc.flightrecorder.parser.IEventSink;
+import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RequiredEventsParserExtensionTest {
+
+    @Mock IRule selected;
+    @Mock IRule unselected;
+    @Mock IEventSinkFactory subFactory;
+    @Mock IEventSink sink;
+
+    @BeforeEach
+    void setup() {
+        Mockito.when(selected.getId()).thenReturn("Selected");
+    }
+
+    @Test
+    void shouldDiscardEventsOnlyRequiredByUnselectedRules() {
+        Mockito.when(selected.getRequiredEvents())
+                .thenReturn(Map.of("shared", EventAvailability.AVAILABLE));
+        Mockito.when(unselected.getRequiredEvents())
+                .thenReturn(
+                        Map.of(
+                                "shared",
+                                EventAvailability.AVAILABLE,
+                                "unshared",
+                                EventAvailability.AVAILABLE,
+                                JdkTypeIDs.VM_INFO,
+                                EventAvailability.AVAILABLE));
+
+        RequiredEventsParserExtension extension =
+                RequiredEventsParserExtension.forRules(
+                        List.of(selected, unselected), List.of(selected));
+
+        MatcherAssert.assertThat(
+                extension.getDiscardedTypes(), Matchers.containsInAnyOrder("unshared"));
+    }
+
+    @Test
+    void shouldOnlyDelegateRetainedTypes() {
+        Mockito.when(selected.getRequiredEvents())
+                .thenReturn(Map.of("wanted", EventAvailability.AVAILABLE));
+        Mockito.when(unselected.getRequiredEvents())
+                .thenReturn(Map.of("unwanted", EventAvailability.AVAILABLE));
+        Mockito.when(
+                        subFactory.create(
+                                Mockito.anyString(),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.any(),
+                                Mockito.any()))
+                .thenReturn(sink);
+
+        IEventSinkFactory factory =
+                RequiredEventsParserExtension.forRules(
+                                List.of(selected, unselected), List.of(selected))
+                        .getEventSinkFactory(subFactory);
+
+        MatcherAssert.assertThat(
+                factory.create("wanted", null, null, null, List.of()), Matchers.sameInstance(sink));
+        MatcherAssert.assertThat(
+                factory.create("unknown", null, null, null, List.of()),
+                Matchers.sameInstance(sink));
+        IEventSink discarded = factory.create("unwanted", null, null, null, List.of());
+        MatcherAssert.assertThat(discarded, Matchers.not(Matchers.sameInstance(sink)));
+        discarded.addEvent(new Object[0]);
+        Mockito.verify(subFactory, Mockito.never())
+                .create(
+                        Mockito.eq("unwanted"),
+                        Mockito.any(),
+                        Mockito.any(),
+                        Mockito.any(),
+                        Mockito.any());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+class RoundRobinSchedulerTest {
+
+    @Test
+    void shouldAlternateBetweenLanes() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RoundRobinScheduler scheduler = new RoundRobinScheduler(executor, 1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch blocker = new CountDownLatch(1);
+        Object a = new Object();
+        Object b = new Object();
+
+        scheduler.submit(
+                a,
+                () -> {
+                    try {
+                        blocker.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    order.add("a1");
+                });
+        scheduler.submit(a, () -> order.add("a2"));
+        scheduler.submit(a, () -> order.add("a3"));
+        scheduler.submit(b, () -> order.add("b1"));
+        scheduler.submit(b, () -> order.add("b2"));
+        Future<?> last = scheduler.submit(b, () -> order.add("b3"));
+        MatcherAssert.assertThat(scheduler.getRunning(), Matchers.equalTo(1));
+
+        blocker.countDown();
+        last.get();
+
+        MatcherAssert.assertThat(order, Matchers.contains("a1", "a2", "b1", "a3", "b2", "b3"));
+        executor.shutdown();
+    }
+
+    @Test
+    void shouldSkipTasksCancelledWhileWaiting() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RoundRobinScheduler scheduler = new RoundRobinScheduler(executor, 1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch blocker = new CountDownLatch(1);
+        Object lane = new Object();
+
+        scheduler.submit(
+                lane,
+                () -> {
+                    try {
+                        blocker.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    order.add("first");
+                });
+        Future<?> cancelled = scheduler.submit(lane, () -> order.add("cancelled"));
+        Future<?> last = scheduler.submit(lane, () -> order.add("last"));
+        cancelled.cancel(false);
+
+        blocker.countDown();
+        last.get();
+
+        MatcherAssert.assertThat(order, Matchers.contains("first", "last"));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.core.reports;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.OptionalDouble;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RuleCostProfileTest {
+
+    @TempDir Path tempDir;
+
+    @Test
+    void shouldScaleCostByItemCount() {
+        RuleCostProfile profile = new RuleCostProfile();
+        MatcherAssert.assertThat(
+                profile.estimate("a", 100), Matchers.equalTo(OptionalDouble.empty()));
+
+        profile.record("a", Duration.ofNanos(1000), 100);
+        MatcherAssert.assertThat(
+                profile.estimate("a", 300), Matchers.equalTo(OptionalDouble.of(3000)));
+
+        profile.record("a", Duration.ofNanos(5000), 100);
+        MatcherAssert.assertThat(
+                profile.estimate("a", 1).getAsDouble(),
+                Matchers.closeTo(10 + RuleCostProfile.SMOOTHING * (50 - 10), 1e-9));
+    }
+
+    @Test
+    void shouldPersistProfile() {
+        Path file = tempDir.resolve("profile").resolve("rules.properties");
+        RuleCostProfile profile = new RuleCostProfile(file);
+        profile.record("a", Duration.ofNanos(1000), 10);
+        profile.save();
+
+        MatcherAssert.assertThat(Files.isRegularFile(file), Matchers.is(true));
+        MatcherAssert.assertThat(
+                new RuleCostProfile(file).estimate("a", 10),
+                Matchers.equalTo(OptionalDouble.of(1000)));
+    }
+
+    @Test
+    void shouldRetryFailedSaveWithoutLeavingTemporaryFiles() throws Exception {
+        Path file = tempDir.resolve("rules.properties");
+        // a non-empty directory in place of the file cannot be replaced
+        Files.createDirectories(file.resolve("blocker"));
+        RuleCostProfile profile = new RuleCostProfile(file);
+        profile.record("a", Duration.ofNanos(1000), 10);
+        profile.save();
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            MatcherAssert.assertThat(files.collect(Collectors.toList()), Matchers.contains(file));
+        }
+
+        Files.delete(file.resolve("blocker"));
+        Files.delete(file);
+        profile.save();
+        MatcherAssert.assertThat(
+                new RuleCostProfile(file).estimate("a", 10),
+                Matchers.equalTo(OptionalDouble.of(1000)));
+    }
+
+    @Test
+    void shouldIgnoreUnreadableEntries() throws Exception {
+        Path file = tempDir.resolve("rules.properties");
+        Files.writeString(file, "a=100\nb=oops\nc=-1\n", StandardCharsets.ISO_8859_1);
+
+        RuleCostProfile profile = new RuleCostProfile(file);
+
+        MatcherAssert.assertThat(
+                profile.estimate("a", 1), Matchers.equalTo(OptionalDouble.of(100)));
+        MatcherAssert.assertThat(
+                profile.estimate("b", 1), Matchers.equalTo(OptionalDouble.empty()));
+        MatcherAssert.assertThat(
+                profile.estimate("c", 1), Matchers.equalTo(OptionalDouble.empty()));
+    }
+}
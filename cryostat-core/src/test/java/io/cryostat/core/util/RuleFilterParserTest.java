@@ -31,6 +31,7 @@ import org.openjdk.jmc.common.util.TypedPreference;
 import org.openjdk.jmc.flightrecorder.rules.IResult;
 import org.openjdk.jmc.flightrecorder.rules.IResultValueProvider;
 import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
 import org.openjdk.jmc.flightrecorder.rules.TypedResult;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 
@@ -174,6 +175,50 @@ public class RuleFilterParserTest {
                 rules, Matchers.equalTo(List.of(rule0, rule1, rule2, rule3, rule4)));
     }
 
+    @Test
+    void shouldReuseCompiledFilter() {
+        MatcherAssert.assertThat(
+                parser.parse("*,!Rule0"), Matchers.sameInstance(parser.parse("*,!Rule0")));
+    }
+
+    @Test
+    void shouldShareCompiledFiltersBetweenRegistryParsers() {
+        MatcherAssert.assertThat(
+                new RuleFilterParser().parse("*,!PID1Rule"),
+                Matchers.sameInstance(new RuleFilterParser().parse("*,!PID1Rule")));
+        MatcherAssert.assertThat(
+                RuleFilterParser.Builder.create().acceptAll().build(),
+                Matchers.sameInstance(RuleFilterParser.Builder.create().acceptAll().build()));
+    }
+
+    @Test
+    void shouldMatchRegistryAndCustomRules() {
+        RuleFilterParser registryParser = new RuleFilterParser();
+        List<IRule> registryRules = new ArrayList<>(RuleRegistry.getRules());
+        IRule pid1 =
+                registryRules.stream()
+                        .filter(r -> "PID1Rule".equals(r.getId()))
+                        .findFirst()
+                        .orElseThrow();
+        TestRule custom = new TestRule("Custom", pid1.getTopic());
+
+        Predicate<IRule> byTopic = registryParser.parse(pid1.getTopic().toUpperCase());
+        MatcherAssert.assertThat(byTopic.test(pid1), Matchers.is(true));
+        MatcherAssert.assertThat(byTopic.test(custom), Matchers.is(true));
+
+        Predicate<IRule> allButPid1 = registryParser.parse("*,!pid1rule");
+        MatcherAssert.assertThat(allButPid1.test(pid1), Matchers.is(false));
+        MatcherAssert.assertThat(allButPid1.test(custom), Matchers.is(true));
+        MatcherAssert.assertThat(
+                registryRules.stream().filter(allButPid1).count(),
+                Matchers.equalTo((long) registryRules.size() - 1));
+
+        // a rule sharing a registry rule's ID but not its topic is not the registry rule
+        TestRule impostor = new TestRule("PID1Rule", "Other");
+        MatcherAssert.assertThat(
+                registryParser.parse(pid1.getTopic()).test(impostor), Matchers.is(false));
+    }
+
     @Nested
     public class BuilderTest {
 